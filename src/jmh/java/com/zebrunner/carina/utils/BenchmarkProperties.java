@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Generated properties used by benchmarks: {@code size} plain keys and a chain of {@code depth} placeholders,
+ * where each key of the chain references the previous one
+ */
+final class BenchmarkProperties {
+    static final String ENV = "BENCH";
+    static final String ENV_KEY = "bench.env";
+    static final String INT_KEY = "bench.int";
+
+    private BenchmarkProperties() {
+        // hide
+    }
+
+    static String key(int index) {
+        return "bench.key." + index;
+    }
+
+    /**
+     * @return key of the last (the deepest) element of the chain
+     */
+    static String chainKey(int depth) {
+        return "bench.chain." + depth;
+    }
+
+    static Properties create(int size, int depth) {
+        Properties properties = new Properties();
+        for (int i = 0; i < size; i++) {
+            properties.setProperty(key(i), "value" + i);
+        }
+        properties.setProperty(chainKey(0), "http://localhost");
+        for (int i = 1; i <= depth; i++) {
+            properties.setProperty(chainKey(i), "${" + chainKey(i - 1) + "}/" + i);
+        }
+        properties.setProperty(INT_KEY, "8081");
+        properties.setProperty("env", ENV);
+        properties.setProperty(ENV + "." + ENV_KEY, "env_value");
+        return properties;
+    }
+
+    /**
+     * Publishes generated properties as global {@link R#CONFIG} properties at once. Use {@link R#reinit()} to restore them
+     */
+    static void publish(int size, int depth) {
+        Properties properties = new Properties();
+        properties.putAll(R.CONFIG.snapshot().asMap());
+        properties.putAll(create(size, depth));
+        R.publish(Map.of(R.CONFIG, PropertiesSnapshot.of(new Properties(), properties)));
+    }
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks at 1, N and 2N threads, where N is the number of available processors.<br>
+ * Results of every run are written in JSON format to the {@code jmh-result-<threads>-threads.json} file
+ * of the directory passed as the first argument. Allocation rate is reported by {@link GCProfiler}.
+ * Other arguments are passed to JMH as is, for example {@code -wi 1 -i 3 RBenchmark}.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+        // hide
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path resultDirectory = Files.createDirectories(Path.of(args.length > 0 ? args[0] : "target/jmh"));
+        String[] jmhArgs = new String[Math.max(args.length - 1, 0)];
+        System.arraycopy(args, Math.min(args.length, 1), jmhArgs, 0, jmhArgs.length);
+        CommandLineOptions commandLineOptions = new CommandLineOptions(jmhArgs);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        Set<Integer> threads = new LinkedHashSet<>();
+        threads.add(1);
+        threads.add(processors);
+        threads.add(processors * 2);
+
+        for (int count : threads) {
+            Options options = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .threads(count)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultDirectory.resolve("jmh-result-" + count + "-threads.json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.zebrunner.carina.utils.config.Configuration;
+import com.zebrunner.carina.utils.config.DefaultEnvArgResolver;
+import com.zebrunner.carina.utils.config.IEnvArgResolver;
+import com.zebrunner.carina.utils.config.StandardConfigurationOption;
+
+/**
+ * Benchmarks of the {@link Configuration} reads: typed values and environment parameters resolved by {@link IEnvArgResolver}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfigurationBenchmark {
+    private static final IEnvArgResolver ENV_ARG_RESOLVER = new DefaultEnvArgResolver();
+
+    @Param({ "100", "10000" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean overridden;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkProperties.publish(size, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        R.reinit();
+    }
+
+    /**
+     * Test properties are thread local, so they are set up by the benchmark thread itself
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Setup(Level.Trial)
+        public void setUp(ConfigurationBenchmark benchmark) {
+            if (benchmark.overridden) {
+                R.CONFIG.put(BenchmarkProperties.INT_KEY, "9090", true);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            R.CONFIG.clearTestProperties();
+        }
+    }
+
+    @Benchmark
+    public Optional<Integer> getInteger(TestState state) {
+        return Configuration.get(BenchmarkProperties.INT_KEY, Integer.class);
+    }
+
+    @Benchmark
+    public Optional<String> getEnvironmentParameter(TestState state) {
+        return Configuration.get(BenchmarkProperties.ENV_KEY, StandardConfigurationOption.ENVIRONMENT);
+    }
+
+    @Benchmark
+    public String resolveEnvironmentParameter(TestState state) {
+        return ENV_ARG_RESOLVER.get(BenchmarkProperties.ENV, BenchmarkProperties.ENV_KEY);
+    }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the uncached placeholder resolution by {@link PlaceholderResolver}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaceholderResolverBenchmark {
+
+    @Param({ "100", "10000" })
+    public int size;
+
+    @Param({ "1", "8", "32" })
+    public int depth;
+
+    private Properties properties;
+    // keys are built once, so benchmarks measure resolution only
+    private String plainKey;
+    private String chainKey;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        properties = BenchmarkProperties.create(size, depth);
+        plainKey = BenchmarkProperties.key(0);
+        chainKey = BenchmarkProperties.chainKey(depth);
+    }
+
+    @Benchmark
+    public String resolvePlain() {
+        return PlaceholderResolver.resolve(properties, plainKey);
+    }
+
+    @Benchmark
+    public String resolveChain() {
+        return PlaceholderResolver.resolve(properties, chainKey);
+    }
+}
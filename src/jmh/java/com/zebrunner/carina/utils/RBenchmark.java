@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of the {@link R} reads with and without properties overridden for the current test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RBenchmark {
+
+    @Param({ "100", "10000" })
+    public int size;
+
+    @Param({ "1", "32" })
+    public int depth;
+
+    @Param({ "false", "true" })
+    public boolean overridden;
+
+    // keys are built once, so benchmarks measure reads only
+    private String firstKey;
+    private String lastKey;
+    private String middleKey;
+    private String chainKey;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkProperties.publish(size, depth);
+        firstKey = BenchmarkProperties.key(0);
+        lastKey = BenchmarkProperties.key(size - 1);
+        middleKey = BenchmarkProperties.key(size / 2);
+        chainKey = BenchmarkProperties.chainKey(depth);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        R.reinit();
+    }
+
+    /**
+     * Test properties are thread local, so they are set up by the benchmark thread itself
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Setup(Level.Trial)
+        public void setUp(RBenchmark benchmark) {
+            if (benchmark.overridden) {
+                R.CONFIG.put(benchmark.firstKey, "overridden", true);
+                R.CONFIG.put(BenchmarkProperties.INT_KEY, "9090", true);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            R.CONFIG.clearTestProperties();
+        }
+    }
+
+    @Benchmark
+    public String get(TestState state) {
+        return R.CONFIG.get(firstKey);
+    }
+
+    @Benchmark
+    public String getNotOverridden(TestState state) {
+        return R.CONFIG.get(lastKey);
+    }
+
+    @Benchmark
+    public String getPlaceholderChain(TestState state) {
+        return R.CONFIG.get(chainKey);
+    }
+
+    @Benchmark
+    public int getInt(TestState state) {
+        return R.CONFIG.getInt(BenchmarkProperties.INT_KEY);
+    }
+
+    @Benchmark
+    public String getProperties(TestState state) {
+        Properties properties = R.CONFIG.getProperties();
+        return properties.getProperty(middleKey);
+    }
+
+    @Benchmark
+    public String getPropertiesView(TestState state) {
+        Properties properties = R.CONFIG.getPropertiesView();
+        return properties.getProperty(middleKey);
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Startup benchmarks of the {@link R} resources lookup: {@link ResourceIndex} against probing the class loader
+ * for every override level of every resource.<br>
+ * Every invocation uses a new class loader over the benchmark classpath, so no jar is opened in advance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResourceIndexBenchmark {
+    private static final List<String> BASE_NAMES = List.of("api.properties", "config.properties", "testdata.properties",
+            "email.properties", "report.properties", "database.properties", "zafira.properties");
+
+    private URL[] classpath;
+    private URLClassLoader classLoader;
+
+    @Setup(Level.Trial)
+    public void setUpClasspath() throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (String path : StringUtils.split(System.getProperty("java.class.path", ""), File.pathSeparator)) {
+            urls.add(new File(path).toURI().toURL());
+        }
+        classpath = urls.toArray(new URL[0]);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpClassLoader() {
+        ResourceIndex.clearJarContents();
+        classLoader = new URLClassLoader(classpath, ClassLoader.getPlatformClassLoader());
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownClassLoader() throws IOException {
+        classLoader.close();
+    }
+
+    @Benchmark
+    public List<URL> buildIndex() throws IOException {
+        ResourceIndex index = ResourceIndex.build(classLoader, BASE_NAMES);
+        List<URL> found = new ArrayList<>();
+        for (String baseName : BASE_NAMES) {
+            found.addAll(index.getResources(baseName));
+            String name = baseName;
+            URL url;
+            while ((url = index.getResource(name = "_" + name)) != null) {
+                found.add(url);
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public List<URL> probeClassLoader() throws IOException {
+        List<URL> found = new ArrayList<>();
+        for (String baseName : BASE_NAMES) {
+            found.addAll(Collections.list(classLoader.getResources(baseName)));
+            String name = baseName;
+            URL url;
+            while ((url = classLoader.getResource(name = "_" + name)) != null) {
+                found.add(url);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zebrunner.carina.utils.report.ReportContext;
+
+/**
+ * Opt-in metrics of the configuration access: reads per resource and per key ({@link R#get(String)} and typed getters),
+ * reads of the {@link com.zebrunner.carina.utils.config.Configuration} parameters, test overrides, timings of the placeholder
+ * resolution and decryption and hits of the cipher pool.<br>
+ * Metrics are collected only if {@code carina_config_metrics} java argument is true, otherwise every hook costs a single check of the constant.
+ * Collected metrics are written to the {@code configuration-metrics.txt} file of the {@link ReportContext#getBaseDirectory()} at shutdown.<br>
+ * <b>for internal usage only</b>
+ */
+public final class ConfigurationMetrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final String METRICS_PROPERTY = "carina_config_metrics";
+    static final String FILE_NAME = "configuration-metrics.txt";
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(METRICS_PROPERTY));
+    private static final ConfigurationMetrics INSTANCE = ENABLED ? new ConfigurationMetrics() : null;
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(ConfigurationMetrics::dump, "configuration-metrics"));
+        }
+    }
+
+    private final Map<R, LongAdder> resourceReads = new EnumMap<>(R.class);
+    private final Map<R, Map<String, KeyCounters>> keyReads = new EnumMap<>(R.class);
+    private final Map<String, LongAdder> parameterReads = new ConcurrentHashMap<>();
+    private final Histogram resolveTimings = new Histogram();
+    private final Histogram decryptTimings = new Histogram();
+    private final LongAdder cipherHits = new LongAdder();
+    private final LongAdder cipherMisses = new LongAdder();
+
+    ConfigurationMetrics() {
+        // maps of resources are filled once, so they are only read concurrently
+        for (R resource : R.values()) {
+            resourceReads.put(resource, new LongAdder());
+            keyReads.put(resource, new ConcurrentHashMap<>());
+        }
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Get start time of the timed operation
+     *
+     * @return current value of {@link System#nanoTime()} or 0 if metrics are disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    static void onRead(R resource, String key, boolean overridden) {
+        if (ENABLED) {
+            INSTANCE.read(resource, key, overridden);
+        }
+    }
+
+    static void onOverride(R resource, String key) {
+        if (ENABLED) {
+            INSTANCE.override(resource, key);
+        }
+    }
+
+    static void onResolve(long startNanos) {
+        if (ENABLED) {
+            INSTANCE.resolveTimings.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public static void onParameterRead(String parameter) {
+        if (ENABLED) {
+            INSTANCE.parameterRead(parameter);
+        }
+    }
+
+    public static void onDecrypt(long startNanos) {
+        if (ENABLED) {
+            INSTANCE.decryptTimings.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * @param hit true if cipher was taken from the pool, false if new cipher was created
+     */
+    public static void onCipherBorrow(boolean hit) {
+        if (ENABLED) {
+            (hit ? INSTANCE.cipherHits : INSTANCE.cipherMisses).increment();
+        }
+    }
+
+    void read(R resource, String key, boolean overridden) {
+        resourceReads.get(resource).increment();
+        KeyCounters counters = counters(resource, key);
+        counters.reads.increment();
+        if (overridden) {
+            counters.overriddenReads.increment();
+        }
+    }
+
+    void override(R resource, String key) {
+        counters(resource, key).overrides.increment();
+    }
+
+    void parameterRead(String parameter) {
+        LongAdder counter = parameterReads.get(parameter);
+        if (counter == null) {
+            counter = parameterReads.computeIfAbsent(parameter, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    Histogram getResolveTimings() {
+        return resolveTimings;
+    }
+
+    Histogram getDecryptTimings() {
+        return decryptTimings;
+    }
+
+    private KeyCounters counters(R resource, String key) {
+        Map<String, KeyCounters> counters = keyReads.get(resource);
+        // get before computeIfAbsent: hot keys are already registered and plain get does not lock
+        KeyCounters keyCounters = counters.get(key);
+        if (keyCounters == null) {
+            keyCounters = counters.computeIfAbsent(key, k -> new KeyCounters());
+        }
+        return keyCounters;
+    }
+
+    /**
+     * Writes report of the collected metrics. Keys are sorted by the number of reads, the most read first
+     *
+     * @param writer {@link Writer}
+     */
+    void write(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("# resource reads");
+        resourceReads.forEach((resource, reads) -> out.printf("%s\t%d%n", resource, reads.sum()));
+
+        out.println();
+        out.println("# key reads: resource, key, reads, reads of the test override, test overrides");
+        keyReads.forEach((resource, counters) -> counters.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, KeyCounters> e) -> e.getValue().reads.sum()).reversed())
+                .forEach(e -> out.printf("%s\t%s\t%d\t%d\t%d%n", resource, e.getKey(), e.getValue().reads.sum(),
+                        e.getValue().overriddenReads.sum(), e.getValue().overrides.sum())));
+
+        out.println();
+        out.println("# configuration parameter reads");
+        parameterReads.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .forEach(e -> out.printf("%s\t%d%n", e.getKey(), e.getValue().sum()));
+
+        out.println();
+        out.println("# timings, ns: count, total, max, p50, p90, p99 (percentiles are upper bounds of power of two buckets)");
+        out.printf("resolve\t%s%n", resolveTimings);
+        out.printf("decrypt\t%s%n", decryptTimings);
+
+        out.println();
+        out.println("# cipher pool: hits, misses");
+        out.printf("cipher\t%d\t%d%n", cipherHits.sum(), cipherMisses.sum());
+        out.flush();
+    }
+
+    private static void dump() {
+        try {
+            Path file = ReportContext.getBaseDirectory().resolve(FILE_NAME);
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                INSTANCE.write(writer);
+            }
+            LOGGER.info("Configuration metrics are written to '{}'.", file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to write configuration metrics: {}", e.getMessage());
+        }
+    }
+
+    private static final class KeyCounters {
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder overriddenReads = new LongAdder();
+        private final LongAdder overrides = new LongAdder();
+    }
+
+    /**
+     * Histogram of the durations with power of two buckets: bucket {@code i} counts durations less than {@code 2^i} ns
+     */
+    static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE + 1];
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            long duration = Math.max(nanos, 0);
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(duration)].increment();
+            total.add(duration);
+            max.accumulate(duration);
+        }
+
+        long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * Get upper bound of the percentile
+         *
+         * @param percentile percentile from 0 to 100
+         * @return duration in ns that is not exceeded by the percent of the recorded durations, or 0 if nothing is recorded
+         */
+        long getPercentile(double percentile) {
+            long[] counts = new long[buckets.length];
+            long count = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            long threshold = (long) Math.ceil(count * percentile / 100);
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= threshold && cumulative > 0) {
+                    return i < Long.SIZE - 1 ? (1L << i) : Long.MAX_VALUE;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d\t%d\t%d\t%d\t%d\t%d", getCount(), total.sum(), max.get(),
+                    getPercentile(50), getPercentile(90), getPercentile(99));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+/**
+ * Listener of the global properties changes made by {@link R#put(String, String)} or {@link R#reinit()}.<br>
+ * Listener is called in the thread that changed the properties, right after the change is published.
+ * Changes of the current test properties are not reported.
+ */
+@FunctionalInterface
+public interface IPropertyChangeListener {
+
+    /**
+     * Called once per changed property
+     *
+     * @param change {@link PropertyChange}
+     */
+    void onChange(PropertyChange change);
+}
@@ -0,0 +1,395 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Read-only view of the properties: current test properties over the global properties.<br>
+ * View does not copy properties, so it is cheap to create. Any attempt to modify the view throws
+ * {@link UnsupportedOperationException}, use {@link #materialize()} to get modifiable detached copy.
+ */
+public final class LayeredProperties extends Properties {
+    private static final long serialVersionUID = -2270596282045018545L;
+
+    // immutable global properties
+    private final transient Map<String, String> global;
+    // current test properties, have higher priority than global properties
+    private final transient Map<Object, Object> overrides;
+
+    LayeredProperties(Map<String, String> global, Map<Object, Object> overrides) {
+        this.global = global;
+        this.overrides = overrides;
+    }
+
+    /**
+     * Creates modifiable copy of the properties that is not linked with this view
+     *
+     * @return {@link Properties}
+     */
+    public Properties materialize() {
+        Properties copy = new Properties();
+        copy.putAll(global);
+        copy.putAll(overrides);
+        return copy;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = overrides.get(key);
+        return value != null ? value : global.get(key);
+    }
+
+    @Override
+    public String getProperty(String key) {
+        Object value = get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    @Override
+    public String getProperty(String key, String defaultValue) {
+        String value = getProperty(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return overrides.containsKey(key) || global.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return values().contains(value);
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return containsValue(value);
+    }
+
+    @Override
+    public int size() {
+        int size = global.size();
+        for (Object key : overrides.keySet()) {
+            if (!global.containsKey(key)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return global.isEmpty() && overrides.isEmpty();
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Object> iterator() {
+                Iterator<Map.Entry<Object, Object>> iterator = entryIterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return iterator.next().getKey();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return LayeredProperties.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Object> iterator() {
+                Iterator<Map.Entry<Object, Object>> iterator = entryIterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return iterator.next().getValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LayeredProperties.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Object, Object>> iterator() {
+                return entryIterator();
+            }
+
+            @Override
+            public int size() {
+                return LayeredProperties.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<String> stringPropertyNames() {
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<Object, Object> entry : entrySet()) {
+            if (entry.getKey() instanceof String && entry.getValue() instanceof String) {
+                names.add((String) entry.getKey());
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    @Override
+    public Enumeration<?> propertyNames() {
+        return keys();
+    }
+
+    @Override
+    public Enumeration<Object> keys() {
+        return Collections.enumeration(keySet());
+    }
+
+    @Override
+    public Enumeration<Object> elements() {
+        return Collections.enumeration(values());
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Object, ? super Object> action) {
+        Iterator<Map.Entry<Object, Object>> iterator = entryIterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Object, Object> entry = iterator.next();
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void list(PrintStream out) {
+        materialize().list(out);
+    }
+
+    @Override
+    public void list(PrintWriter out) {
+        materialize().list(out);
+    }
+
+    @Override
+    public String toString() {
+        return materialize().toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof Map && materialize().equals(o));
+    }
+
+    @Override
+    public int hashCode() {
+        return materialize().hashCode();
+    }
+
+    @Override
+    public Object clone() {
+        return materialize();
+    }
+
+    @Override
+    public Object setProperty(String key, String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void load(Reader reader) {
+        throw readOnly();
+    }
+
+    @Override
+    public void load(InputStream inStream) {
+        throw readOnly();
+    }
+
+    @Override
+    public void loadFromXML(InputStream in) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void putAll(Map<?, ?> t) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object remove(Object key) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void clear() {
+        throw readOnly();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object replace(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw readOnly();
+    }
+
+    /**
+     * Serialized as detached copy
+     */
+    private Object writeReplace() {
+        return materialize();
+    }
+
+    /**
+     * Iterates test properties first, then global properties that are not overridden
+     */
+    private Iterator<Map.Entry<Object, Object>> entryIterator() {
+        Iterator<Map.Entry<Object, Object>> overridesIterator = overrides.entrySet().iterator();
+        Iterator<Map.Entry<String, String>> globalIterator = global.entrySet().iterator();
+        return new Iterator<>() {
+            private Map.Entry<Object, Object> next = advance();
+
+            private Map.Entry<Object, Object> advance() {
+                if (overridesIterator.hasNext()) {
+                    Map.Entry<Object, Object> entry = overridesIterator.next();
+                    return new AbstractMap.SimpleImmutableEntry<>(entry);
+                }
+                while (globalIterator.hasNext()) {
+                    Map.Entry<String, String> entry = globalIterator.next();
+                    if (!overrides.containsKey(entry.getKey())) {
+                        return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<Object, Object> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<Object, Object> current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Properties view is read-only, use materialize() to get modifiable copy.");
+    }
+}
@@ -16,66 +16,226 @@
 package com.zebrunner.carina.utils;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.zebrunner.carina.utils.commons.SpecialKeywords;
 import com.zebrunner.carina.utils.exception.PlaceholderResolverException;
 
 /**
- * PlaceholderResolver - resolves placeholders in properties.
- * 
+ * PlaceholderResolver - resolves placeholders in properties.<br>
+ * Placeholder has {@code ${key}} format, where key could not contain curly braces.
+ *
  * @author Alexey Khursevich (hursevich@gmail.com)
  */
 public final class PlaceholderResolver {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
-    private static final Pattern PATTERN = Pattern.compile(SpecialKeywords.PLACEHOLER);
+
+    /**
+     * Maximum length of the placeholder chain, e.g. {@code a=${b}, b=${c}, c=value} has depth 3
+     */
+    public static final int MAX_DEPTH = 64;
 
     private PlaceholderResolver() {
     }
 
     /**
      * Resolves value by placeholder recursively.
-     * 
+     *
      * @param properties Properties
      * @param key Key
      * @return resolved value
+     * @throws PlaceholderResolverException if placeholder loop was found or placeholder chain is deeper than {@link #MAX_DEPTH}
      */
     public static String resolve(Properties properties, String key) {
-        String value = properties.getProperty(key);
-        if (value != null) {
-            Matcher matcher = PATTERN.matcher(value);
-            while (matcher.find()) {
-                String placeholder = matcher.group();
-                String placeholderKey = placeholder.replace("${", "").replace("}", "");
-                String resolvedValue = resolve(properties, placeholderKey);
-                if (resolvedValue != null) {
-                    value = value.replace(placeholder, resolvedValue);
+        return resolve(properties::getProperty, key);
+    }
+
+    /**
+     * Resolves value by placeholder recursively.
+     *
+     * @param properties function that returns raw property value by key or null if there are no such property
+     * @param key Key
+     * @return resolved value
+     * @throws PlaceholderResolverException if placeholder loop was found or placeholder chain is deeper than {@link #MAX_DEPTH}
+     */
+    public static String resolve(UnaryOperator<String> properties, String key) {
+        String value = properties.apply(key);
+        if (value == null || indexOfPlaceholder(value, 0) < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length() * 2);
+        Set<String> path = new LinkedHashSet<>();
+        path.add(key);
+        append(builder, value, properties, path);
+        return builder.toString();
+    }
+
+    /**
+     * Appends value to the builder replacing placeholders by resolved values
+     */
+    private static void append(StringBuilder builder, String value, UnaryOperator<String> properties, Set<String> path) {
+        int start = 0;
+        int placeholderStart;
+        while ((placeholderStart = indexOfPlaceholder(value, start)) >= 0) {
+            int placeholderEnd = value.indexOf('}', placeholderStart);
+            builder.append(value, start, placeholderStart);
+            String reference = value.substring(placeholderStart + 2, placeholderEnd);
+            String referenceValue = properties.apply(reference);
+            if (referenceValue == null) {
+                // as designed unresolvable placeholder is kept as is
+                builder.append(value, placeholderStart, placeholderEnd + 1);
+            } else {
+                enter(path, reference);
+                append(builder, referenceValue, properties, path);
+                path.remove(reference);
+            }
+            start = placeholderEnd + 1;
+        }
+        builder.append(value, start, value.length());
+    }
+
+    /**
+     * Registers key in the chain of currently resolved keys
+     *
+     * @param path keys that are currently being resolved, in resolution order
+     * @param key key to resolve next
+     * @throws PlaceholderResolverException if key is already being resolved or chain is too deep
+     */
+    static void enter(Set<String> path, String key) {
+        if (path.contains(key)) {
+            List<String> loop = new ArrayList<>(path);
+            loop.add(key);
+            throw new PlaceholderResolverException(loop);
+        }
+        if (path.size() >= MAX_DEPTH) {
+            throw new PlaceholderResolverException(key, MAX_DEPTH);
+        }
+        path.add(key);
+    }
+
+    /**
+     * Finds start of the first placeholder ({@code ${key}}) beginning at or after the specified index
+     *
+     * @param value string to scan
+     * @param fromIndex the index to start the search from
+     * @return index of the '$' character of the placeholder, or -1 if there are no placeholders
+     */
+    private static int indexOfPlaceholder(String value, int fromIndex) {
+        int length = value.length();
+        int i = value.indexOf("${", fromIndex);
+        while (i >= 0) {
+            for (int j = i + 2; j < length; j++) {
+                char c = value.charAt(j);
+                if (c == '}') {
+                    return i;
+                }
+                if (c == '{') {
+                    break;
                 }
             }
+            i = value.indexOf("${", i + 1);
         }
-        return value;
+        return -1;
     }
 
     /**
-     * Verifies that properties file contains all placeholder definitions and does not have infinit placeholder loops.
-     * 
+     * Compiles raw property value into the sequence of literal and reference (placeholder) segments.
+     *
+     * @param value raw property value
+     * @return {@link Template}
+     */
+    static Template compile(String value) {
+        int placeholderStart = indexOfPlaceholder(value, 0);
+        if (placeholderStart < 0) {
+            return new Template(value);
+        }
+        List<String> literals = new ArrayList<>();
+        List<String> references = new ArrayList<>();
+        int start = 0;
+        while (placeholderStart >= 0) {
+            int placeholderEnd = value.indexOf('}', placeholderStart);
+            literals.add(value.substring(start, placeholderStart));
+            references.add(value.substring(placeholderStart + 2, placeholderEnd));
+            start = placeholderEnd + 1;
+            placeholderStart = indexOfPlaceholder(value, start);
+        }
+        literals.add(value.substring(start));
+        return new Template(literals.toArray(new String[0]), references.toArray(new String[0]));
+    }
+
+    /**
+     * Resolves all properties in one pass: every key is resolved only once, after all keys it references (topological order).
+     *
+     * @param properties raw properties
+     * @param problems list that will be filled by descriptions of the missing and looped references
+     * @return resolved values of the keys that were resolved successfully
+     */
+    static Map<String, String> resolveAll(Map<String, String> properties, List<String> problems) {
+        Map<String, String> resolved = new HashMap<>();
+        Set<String> failed = new HashSet<>();
+        for (String key : properties.keySet()) {
+            resolveInOrder(properties, key, resolved, failed, new LinkedHashSet<>(), problems);
+        }
+        return resolved;
+    }
+
+    private static boolean resolveInOrder(Map<String, String> properties, String key, Map<String, String> resolved, Set<String> failed,
+            Set<String> path, List<String> problems) {
+        if (resolved.containsKey(key)) {
+            return true;
+        }
+        if (failed.contains(key)) {
+            return false;
+        }
+        try {
+            enter(path, key);
+        } catch (PlaceholderResolverException e) {
+            problems.add(e.getMessage());
+            failed.add(key);
+            return false;
+        }
+        Template template = compile(properties.get(key));
+        boolean isResolvable = true;
+        for (String reference : template.getReferences()) {
+            if (!properties.containsKey(reference)) {
+                problems.add(String.format("Value not found by key '%s' referenced from '%s'", reference, key));
+                isResolvable = false;
+            } else if (!resolveInOrder(properties, reference, resolved, failed, path, problems)) {
+                isResolvable = false;
+            }
+        }
+        path.remove(key);
+        if (isResolvable) {
+            resolved.put(key, template.render(resolved::get));
+        } else {
+            failed.add(key);
+        }
+        return isResolvable;
+    }
+
+    /**
+     * Verifies that properties file does not have infinite placeholder loops.
+     * Every key is visited only once, so validation takes linear time.
+     *
      * @param properties Properties value
      * @return validation results
      */
     public static boolean isValid(Properties properties) {
-        Set<Object> keys = properties.keySet();
-        for (Object key : keys) {
+        // key -> true if key is fully validated, false if it is validated right now
+        Map<String, Boolean> states = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
             try {
-                resolve(properties, (String) key);
-            } catch (StackOverflowError e) {
-                LOGGER.error("Infinit placeholder loop was found for '{}'", properties.getProperty((String) key));
-                return false;
+                validate(properties, key, states, new LinkedHashSet<>());
             } catch (PlaceholderResolverException e) {
                 LOGGER.error(e.getMessage());
                 return false;
@@ -83,4 +243,72 @@ public final class PlaceholderResolver {
         }
         return true;
     }
+
+    private static void validate(Properties properties, String key, Map<String, Boolean> states, Set<String> path) {
+        if (Boolean.TRUE.equals(states.get(key))) {
+            return;
+        }
+        enter(path, key);
+        states.put(key, Boolean.FALSE);
+        String value = properties.getProperty(key);
+        if (value != null) {
+            for (String reference : compile(value).getReferences()) {
+                if (properties.getProperty(reference) != null) {
+                    validate(properties, reference, states, path);
+                }
+            }
+        }
+        path.remove(key);
+        states.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * Compiled property value: {@code literals[0] + ${references[0]} + literals[1] + ... + literals[n]}
+     */
+    static final class Template {
+        private static final String[] NO_REFERENCES = new String[0];
+
+        private final String[] literals;
+        private final String[] references;
+
+        private Template(String literal) {
+            this(new String[] { literal }, NO_REFERENCES);
+        }
+
+        private Template(String[] literals, String[] references) {
+            this.literals = literals;
+            this.references = references;
+        }
+
+        boolean isLiteral() {
+            return references.length == 0;
+        }
+
+        String[] getReferences() {
+            return references;
+        }
+
+        /**
+         * Builds value using resolved references
+         *
+         * @param resolver function that returns resolved value by reference key or null if there are no such property
+         * @return resolved value. Unresolvable placeholders are kept as is
+         */
+        String render(UnaryOperator<String> resolver) {
+            if (isLiteral()) {
+                return literals[0];
+            }
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < references.length; i++) {
+                builder.append(literals[i]);
+                String resolved = resolver.apply(references[i]);
+                if (resolved != null) {
+                    builder.append(resolved);
+                } else {
+                    builder.append("${").append(references[i]).append('}');
+                }
+            }
+            return builder.append(literals[references.length]).toString();
+        }
+    }
 }
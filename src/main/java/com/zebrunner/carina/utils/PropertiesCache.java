@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opt-in on-disk cache of the {@link R} resource files content ({@link PropertiesLoader.Layers}), shared between JVMs.<br>
+ * Cache is enabled by {@code carina_properties_cache=true} java argument and is stored in the {@code target/carina-cache} directory
+ * of the project or in the directory specified by {@code carina_properties_cache_dir} java argument.
+ * Cache is used only when the resource files (their urls, sizes and modification times) are the same as when the cache was written.
+ * Environment variables and java arguments are never cached.<br>
+ * Important: <b>raw values of the resource files are stored on disk as is, including secrets (for example {@code crypto_key_value}
+ * or not encrypted passwords)</b>, so the cache directory and file are created accessible only by their owner, and the cache
+ * is not read if the directory or file is owned by another user or is accessible by group or others
+ */
+final class PropertiesCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final String CACHE_ENABLED = "carina_properties_cache";
+    private static final String CACHE_DIR = "carina_properties_cache_dir";
+    // should be changed when cache format is changed
+    private static final String FORMAT_VERSION = "2";
+    private static final String OVERRIDE_SIGN = "_";
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String JAR_PREFIX = "jar|";
+    private static final String LAYER_PREFIX = "layer|";
+    private static final String DEFAULTS_LAYER = "d";
+    private static final String OVERRIDES_LAYER = "o";
+
+    private final String fingerprint;
+    private final Map<String, PropertiesLoader.Layers> layers;
+
+    private PropertiesCache(String fingerprint, Map<String, PropertiesLoader.Layers> layers) {
+        this.fingerprint = fingerprint;
+        this.layers = layers;
+    }
+
+    static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(CACHE_ENABLED));
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return resource file name - content of the resource files
+     */
+    Map<String, PropertiesLoader.Layers> getLayers() {
+        return layers;
+    }
+
+    /**
+     * Reads cache file. Cached jar contents are passed to the {@link ResourceIndex}, so jars are not re-read
+     *
+     * @return {@link PropertiesCache} or null if there are no cache or it could not be read
+     */
+    static PropertiesCache read() {
+        Path cacheFile = getCacheFile();
+        if (!Files.isRegularFile(cacheFile) || !isPrivate(cacheFile.getParent()) || !isPrivate(cacheFile)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.debug("Unable to read properties cache '{}'.", cacheFile, e);
+            return null;
+        }
+
+        Map<String, String> jarContents = new HashMap<>();
+        Map<String, PropertiesLoader.Layers> layers = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key);
+            if (key.startsWith(JAR_PREFIX)) {
+                jarContents.put(key.substring(JAR_PREFIX.length()), value);
+            } else if (key.startsWith(LAYER_PREFIX)) {
+                // layer|<resource file>|<layer>|<property key>
+                String[] parts = StringUtils.splitPreserveAllTokens(key.substring(LAYER_PREFIX.length()), "|", 3);
+                PropertiesLoader.Layers resourceLayers = layers.computeIfAbsent(parts[0],
+                        k -> new PropertiesLoader.Layers(new Properties(), new Properties()));
+                if (parts.length == 3) {
+                    (DEFAULTS_LAYER.equals(parts[1]) ? resourceLayers.getDefaults() : resourceLayers.getOverrides()).setProperty(parts[2], value);
+                }
+            }
+        }
+        ResourceIndex.importJarContents(jarContents);
+        return new PropertiesCache(properties.getProperty(FINGERPRINT_KEY), layers);
+    }
+
+    /**
+     * Writes cache file atomically
+     *
+     * @param fingerprint fingerprint of the resource files, see {@link #fingerprint(ResourceIndex, Collection)}
+     * @param layers resource file name - content of the resource files
+     */
+    static void write(String fingerprint, Map<String, PropertiesLoader.Layers> layers) {
+        Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT_KEY, fingerprint);
+        ResourceIndex.exportJarContents().forEach((key, value) -> properties.setProperty(JAR_PREFIX + key, value));
+        layers.forEach((resourceFile, resourceLayers) -> {
+            // marker of the resource, so resources without properties are cached too
+            properties.setProperty(LAYER_PREFIX + resourceFile, "");
+            resourceLayers.getDefaults().forEach((key, value) -> properties.put(LAYER_PREFIX + resourceFile + "|" + DEFAULTS_LAYER + "|" + key, value));
+            resourceLayers.getOverrides().forEach((key, value) -> properties.put(LAYER_PREFIX + resourceFile + "|" + OVERRIDES_LAYER + "|" + key, value));
+        });
+
+        Path cacheFile = getCacheFile();
+        try {
+            Path tempFile;
+            if (isPosix()) {
+                Files.createDirectories(cacheFile.getParent(), PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+                tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp",
+                        PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+            } else {
+                Files.createDirectories(cacheFile.getParent());
+                tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            }
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Unable to write properties cache '{}'.", cacheFile, e);
+        }
+    }
+
+    /**
+     * Calculates fingerprint of the resource files: their urls, sizes and modification times
+     *
+     * @param index classpath resources index
+     * @param resourceFiles resource file names, for example config.properties
+     * @return fingerprint or null if resource files could not be determined
+     */
+    static String fingerprint(ResourceIndex index, Collection<String> resourceFiles) {
+        if (!index.isIndexed()) {
+            return null;
+        }
+        StringBuilder fingerprint = new StringBuilder(FORMAT_VERSION);
+        try {
+            for (String resourceFile : resourceFiles) {
+                fingerprint.append('\n').append(resourceFile);
+                List<URL> urls = new ArrayList<>(index.getResources(resourceFile));
+                URL overrideResource;
+                String overrideName = OVERRIDE_SIGN + resourceFile;
+                while ((overrideResource = index.getResource(overrideName)) != null) {
+                    urls.add(overrideResource);
+                    overrideName = OVERRIDE_SIGN + overrideName;
+                }
+                for (URL url : urls) {
+                    Path file = getFile(url);
+                    fingerprint.append('\n')
+                            .append(url)
+                            .append('|')
+                            .append(Files.size(file))
+                            .append('|')
+                            .append(Files.getLastModifiedTime(file).toMillis());
+                }
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            LOGGER.debug("Unable to calculate fingerprint of the resources, properties cache will not be used.", e);
+            return null;
+        }
+        return DigestUtils.sha256Hex(fingerprint.toString());
+    }
+
+    /**
+     * Get file that contains resource: the resource file itself or the jar
+     */
+    private static Path getFile(URL url) throws IOException, URISyntaxException {
+        if ("jar".equals(url.getProtocol())) {
+            return Path.of(new URL(StringUtils.substringBefore(url.getPath(), "!/")).toURI());
+        }
+        return Path.of(url.toURI());
+    }
+
+    static Path getCacheFile() {
+        String cacheDir = System.getProperty(CACHE_DIR);
+        String userDir = System.getProperty("user.dir", "");
+        // custom directory could be shared by several projects, so cache is separated per project directory
+        Path directory = StringUtils.isBlank(cacheDir) ? Path.of(userDir, "target", "carina-cache") : Path.of(cacheDir);
+        return directory.resolve("properties-" + DigestUtils.sha256Hex(userDir).substring(0, 16) + ".cache");
+    }
+
+    /**
+     * Checks that the cache directory or file is owned by the current user and (where POSIX permissions are supported)
+     * is not accessible by group or others, so the cache could not be read or forged by another user
+     */
+    private static boolean isPrivate(Path path) {
+        try {
+            UserPrincipal currentUser = path.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!currentUser.equals(Files.getOwner(path, LinkOption.NOFOLLOW_LINKS))) {
+                LOGGER.warn("Properties cache '{}' is owned by another user and will not be used.", path);
+                return false;
+            }
+            if (isPosix()) {
+                Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+                if (!(Files.isDirectory(path) ? OWNER_ONLY_DIRECTORY : OWNER_ONLY_FILE).containsAll(permissions)) {
+                    LOGGER.warn("Properties cache '{}' is accessible by other users and will not be used.", path);
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.debug("Unable to check owner of the properties cache '{}', it will not be used.", path, e);
+            return false;
+        }
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+}
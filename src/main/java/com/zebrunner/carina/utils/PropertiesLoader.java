@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.zebrunner.carina.utils.commons.SpecialKeywords;
+import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
+
+/**
+ * Loads {@link R} resources into {@link PropertiesSnapshot}s.<br>
+ * Resources are loaded concurrently. Important: <b>loader is used during {@link R} class initialization, so code executed by the
+ * loader threads should not touch static members of {@link R}, otherwise threads will wait for the initialization forever</b>
+ */
+final class PropertiesLoader {
+    private static final String OVERRIDE_SIGN = "_";
+
+    private PropertiesLoader() {
+    }
+
+    /**
+     * Loads all resources concurrently. Result is returned only when all resources are loaded
+     *
+     * @param classLoader class loader used to find resources
+     * @param resources resource (for example {@link R#CONFIG}) - resource file name (for example config.properties)
+     * @param config resource that contains configuration (capabilities and placeholders support)
+     * @param resolvePlaceholders if true, placeholders of the config resource will be resolved in advance
+     * @return resource - loaded properties
+     * @throws InvalidConfigurationException if any resource could not be loaded
+     */
+    static <K> Map<K, PropertiesSnapshot> loadAll(ClassLoader classLoader, Map<K, String> resources, K config, boolean resolvePlaceholders) {
+        boolean isCacheEnabled = PropertiesCache.isEnabled();
+        PropertiesCache cache = isCacheEnabled ? PropertiesCache.read() : null;
+        ResourceIndex index = ResourceIndex.build(classLoader, resources.values());
+        String fingerprint = isCacheEnabled ? PropertiesCache.fingerprint(index, resources.values()) : null;
+        Map<String, Layers> cachedLayers = cache != null && fingerprint != null && fingerprint.equals(cache.getFingerprint())
+                ? cache.getLayers()
+                : null;
+        Map<String, Layers> loadedLayers = new ConcurrentHashMap<>();
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(resources.size(), runnable -> {
+            Thread thread = new Thread(runnable, "carina-properties-loader-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<K, CompletableFuture<PropertiesSnapshot>> futures = new LinkedHashMap<>();
+            resources.forEach((resource, resourceFile) -> futures.put(resource, CompletableFuture.supplyAsync(() -> {
+                Layers layers = cachedLayers != null ? cachedLayers.get(resourceFile) : null;
+                if (layers == null) {
+                    layers = readLayers(index, resource.toString(), resourceFile);
+                }
+                loadedLayers.put(resourceFile, layers);
+                return load(layers, resource.toString(), resource == config, resolvePlaceholders);
+            }, executor)));
+
+            Map<K, PropertiesSnapshot> snapshots = new LinkedHashMap<>();
+            for (Map.Entry<K, CompletableFuture<PropertiesSnapshot>> entry : futures.entrySet()) {
+                snapshots.put(entry.getKey(), entry.getValue().join());
+            }
+            if (fingerprint != null && cachedLayers == null) {
+                PropertiesCache.write(fingerprint, loadedLayers);
+            }
+            return snapshots;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof InvalidConfigurationException) {
+                throw (InvalidConfigurationException) e.getCause();
+            }
+            throw new InvalidConfigurationException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Reads properties of the resource files: default properties and overrides ({@code _config.properties},
+     * {@code __config.properties} and so on)
+     *
+     * @param index classpath resources index
+     * @param name resource name used in error messages, for example CONFIG
+     * @param resourceFile resource file name, for example config.properties
+     * @return {@link Layers}
+     * @throws InvalidConfigurationException if resource could not be read
+     */
+    static Layers readLayers(ResourceIndex index, String name, String resourceFile) {
+        return readLayers(index, name, resourceFile, PropertiesLoader::read);
+    }
+
+    /**
+     * Reads properties of the resource files by the reader, see {@link #readLayers(ResourceIndex, String, String)}
+     *
+     * @param index classpath resources index
+     * @param name resource name used in error messages, for example CONFIG
+     * @param resourceFile resource file name, for example config.properties
+     * @param reader reader of the resource file properties, it could serve unchanged files from memory
+     * @return {@link Layers}
+     * @throws InvalidConfigurationException if resource could not be read
+     */
+    static Layers readLayers(ResourceIndex index, String name, String resourceFile, ResourceReader reader) {
+        try {
+            Properties defaultProperties = new Properties();
+            if (index.getResource(resourceFile) != null) {
+                defaultProperties = collect(index, resourceFile, reader);
+            }
+
+            Properties overrideProperties = new Properties();
+            URL overrideResource;
+            StringBuilder resourceNameBuilder = new StringBuilder(OVERRIDE_SIGN + resourceFile);
+            while ((overrideResource = index.getResource(resourceNameBuilder.toString())) != null) {
+                overrideProperties.putAll(reader.read(overrideResource));
+                resourceNameBuilder.insert(0, OVERRIDE_SIGN);
+            }
+            return new Layers(defaultProperties, overrideProperties);
+        } catch (Exception e) {
+            throw new InvalidConfigurationException("Invalid config in '" + name + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads properties of the resource file
+     *
+     * @param url resource url
+     * @return properties
+     * @throws IOException if resource could not be read
+     */
+    static Properties read(URL url) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream stream = url.openStream()) {
+            properties.load(stream);
+        }
+        return properties;
+    }
+
+    /**
+     * Loads resource: properties of the resource files, environment variables and java arguments
+     *
+     * @param layers properties of the resource files
+     * @param name resource name used in error messages, for example CONFIG
+     * @param isConfig true if resource contains configuration
+     * @param resolvePlaceholders if true, placeholders of the config resource will be resolved in advance
+     * @return {@link PropertiesSnapshot}
+     * @throws InvalidConfigurationException if resource could not be loaded
+     */
+    static PropertiesSnapshot load(Layers layers, String name, boolean isConfig, boolean resolvePlaceholders) {
+        try {
+            Properties properties = new Properties();
+            properties.putAll(layers.getDefaults());
+            properties.putAll(layers.getOverrides());
+
+            // Overrides properties by env variables
+            for (Object key : properties.keySet()) {
+                String systemValue = System.getenv((String) key);
+                if (!StringUtils.isEmpty(systemValue)) {
+                    properties.put(key, systemValue);
+                }
+            }
+
+            // Overrides properties by systems properties (java arguments)
+            for (Object key : properties.keySet()) {
+                String systemValue = System.getProperty((String) key);
+                if (!StringUtils.isEmpty(systemValue)) {
+                    properties.put(key, systemValue);
+                }
+            }
+            if (isConfig) {
+                // no need to read env variables using System.getenv()
+                final String prefix = SpecialKeywords.CAPABILITIES + ".";
+
+                // read all java arguments and redefine capabilities.* items. Keys are compared ignoring case without copying
+                for (String key : System.getProperties().stringPropertyNames()) {
+                    if (key.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                        String value = System.getProperty(key);
+                        if (!StringUtils.isEmpty(value) && !value.equalsIgnoreCase(SpecialKeywords.NULL)) {
+                            properties.put(key, value);
+                        }
+                    }
+                }
+                // delete all empty or null capabilites.* items from properties
+                properties.entrySet().removeIf(entry -> ((String) entry.getKey()).regionMatches(true, 0, prefix, 0, prefix.length())
+                        && (StringUtils.isBlank((String) entry.getValue()) || ((String) entry.getValue()).equalsIgnoreCase(SpecialKeywords.NULL)));
+            }
+            PropertiesSnapshot snapshot = PropertiesSnapshot.of(layers.getDefaults(), properties);
+            if (resolvePlaceholders && isConfig) {
+                List<String> problems = new ArrayList<>();
+                snapshot = snapshot.resolveAll(problems);
+                if (!problems.isEmpty()) {
+                    throw new InvalidConfigurationException("invalid placeholders:" + System.lineSeparator()
+                            + String.join(System.lineSeparator(), problems));
+                }
+            }
+            return snapshot;
+        } catch (Exception e) {
+            throw new InvalidConfigurationException("Invalid config in '" + name + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Collect all properties with the same name into a single Properties object
+     *
+     * @param index classpath resources index
+     * @param resourceName resource name, for example config.properties
+     * @param reader reader of the resource file properties
+     * @return collected properties
+     */
+    private static Properties collect(ResourceIndex index, String resourceName, ResourceReader reader) throws IOException {
+        Properties assembledProperties = new Properties();
+        for (URL url : index.getResources(resourceName)) {
+            assembledProperties.putAll(reader.read(url));
+        }
+        return assembledProperties;
+    }
+
+    /**
+     * Reader of the resource file properties
+     */
+    @FunctionalInterface
+    interface ResourceReader {
+        /**
+         * @param url resource url
+         * @return properties of the resource file, should not be modified by the caller
+         * @throws IOException if resource could not be read
+         */
+        Properties read(URL url) throws IOException;
+    }
+
+    /**
+     * Properties of the resource files, before environment variables and java arguments are applied
+     */
+    static final class Layers {
+        private final Properties defaults;
+        private final Properties overrides;
+
+        Layers(Properties defaults, Properties overrides) {
+            this.defaults = defaults;
+            this.overrides = overrides;
+        }
+
+        /**
+         * @return properties collected from all resource files with the resource name, for example {@code config.properties}
+         */
+        Properties getDefaults() {
+            return defaults;
+        }
+
+        /**
+         * @return merged properties of the {@code _config.properties}, {@code __config.properties} and so on
+         */
+        Properties getOverrides() {
+            return overrides;
+        }
+    }
+}
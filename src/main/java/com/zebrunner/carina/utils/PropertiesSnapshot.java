@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable version of the properties of a single {@link R} resource.<br>
+ * Snapshot is never modified after creation: any update produces a new snapshot that is published by {@link R} atomically,
+ * so reads do not need any synchronization.
+ */
+final class PropertiesSnapshot {
+    static final PropertiesSnapshot EMPTY = new PropertiesSnapshot(Map.of(), Map.of());
+
+    // properties collected from the resource files without overrides
+    private final Map<String, String> defaults;
+    // effective properties (overrides, env variables and system properties applied)
+    private final Map<String, String> properties;
+    // lazily filled cache of the values with resolved placeholders
+    private final ConcurrentHashMap<String, String> resolved;
+    // reference key -> keys whose values contain placeholder with this reference. Filled on resolution, so values that are not
+    // resolved yet are missing until the graph is completed, see getAffectedKeys(String)
+    private final ConcurrentHashMap<String, Set<String>> dependents;
+    private volatile boolean isDependentsComplete;
+    // lazily filled cache of the values (resolved or raw) with memoized primitive representations
+    private final ConcurrentHashMap<String, TypedValue> typed;
+    // lazily built sorted copy of the properties used for prefix lookups, never modified after creation
+    private volatile NavigableMap<String, String> sorted;
+
+    private PropertiesSnapshot(Map<String, String> defaults, Map<String, String> properties) {
+        this(defaults, properties, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), false, new ConcurrentHashMap<>(), null);
+    }
+
+    // maps are owned by the snapshot, so callers should not keep references to them
+    private PropertiesSnapshot(Map<String, String> defaults, Map<String, String> properties, ConcurrentHashMap<String, String> resolved,
+            ConcurrentHashMap<String, Set<String>> dependents, boolean isDependentsComplete, ConcurrentHashMap<String, TypedValue> typed,
+            NavigableMap<String, String> sorted) {
+        this.defaults = Collections.unmodifiableMap(defaults);
+        this.properties = Collections.unmodifiableMap(properties);
+        this.resolved = resolved;
+        this.dependents = dependents;
+        this.isDependentsComplete = isDependentsComplete;
+        this.typed = typed;
+        this.sorted = sorted;
+    }
+
+    static PropertiesSnapshot of(Properties defaults, Properties properties) {
+        return new PropertiesSnapshot(toMap(defaults), toMap(properties));
+    }
+
+    String get(String key) {
+        return properties.get(key);
+    }
+
+    String getDefault(String key) {
+        return defaults.get(key);
+    }
+
+    /**
+     * Get property value with resolved placeholders. Value is compiled and resolved only once per snapshot,
+     * all next calls are served from the cache
+     *
+     * @param key property key
+     * @return resolved value or null if there are no such property
+     */
+    String resolve(String key) {
+        String value = resolved.get(key);
+        if (value != null) {
+            return value;
+        }
+        long start = ConfigurationMetrics.start();
+        value = resolve(key, new LinkedHashSet<>());
+        ConfigurationMetrics.onResolve(start);
+        return value;
+    }
+
+    private String resolve(String key, Set<String> path) {
+        String value = resolved.get(key);
+        if (value != null) {
+            return value;
+        }
+        String raw = properties.get(key);
+        if (raw == null) {
+            return null;
+        }
+        PlaceholderResolver.Template template = PlaceholderResolver.compile(raw);
+        // dependency should be registered before the value is cached, see with(String, String)
+        for (String reference : template.getReferences()) {
+            dependents.computeIfAbsent(reference, k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        PlaceholderResolver.enter(path, key);
+        value = template.render(reference -> resolve(reference, path));
+        path.remove(key);
+        resolved.put(key, value);
+        return value;
+    }
+
+    /**
+     * Get property value with memoized primitive representations. Missing property is represented by an empty value
+     *
+     * @param key property key
+     * @param resolvePlaceholders true if placeholders of the value should be resolved, see {@link #resolve(String)}.
+     *            Should be the same for all calls on the snapshot
+     * @return {@link TypedValue}
+     */
+    TypedValue getTyped(String key, boolean resolvePlaceholders) {
+        TypedValue value = typed.get(key);
+        if (value == null) {
+            // value is resolved (and its dependencies are registered) before it is cached, see with(String, String)
+            String raw = resolvePlaceholders ? resolve(key) : properties.get(key);
+            value = new TypedValue(raw != null ? raw : "");
+            TypedValue existing = typed.putIfAbsent(key, value);
+            if (existing != null) {
+                value = existing;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Creates new snapshot with all values resolved in advance, so reads never resolve placeholders
+     *
+     * @param problems list that will be filled by descriptions of the missing and looped references
+     * @return new {@link PropertiesSnapshot}
+     */
+    PropertiesSnapshot resolveAll(List<String> problems) {
+        ConcurrentHashMap<String, String> allResolved = new ConcurrentHashMap<>(PlaceholderResolver.resolveAll(properties, problems));
+        ConcurrentHashMap<String, Set<String>> allDependents = new ConcurrentHashMap<>();
+        properties.forEach((key, value) -> registerReferences(allDependents, key, value));
+        return new PropertiesSnapshot(defaults, properties, allResolved, allDependents, true, new ConcurrentHashMap<>(), sorted);
+    }
+
+    boolean containsKey(String key) {
+        return properties.containsKey(key);
+    }
+
+    Map<String, String> asMap() {
+        return properties;
+    }
+
+    /**
+     * Get properties whose keys start with the prefix. Sorted index of the properties is built on the first call
+     *
+     * @param prefix key prefix, for example {@code capabilities.}
+     * @return read-only sorted view of the properties
+     */
+    SortedMap<String, String> getByPrefix(String prefix) {
+        NavigableMap<String, String> current = sorted;
+        if (current == null) {
+            current = new TreeMap<>(properties);
+            sorted = current;
+        }
+        return Collections.unmodifiableSortedMap(subMap(current, prefix));
+    }
+
+    /**
+     * Get part of the sorted map whose keys start with the prefix
+     *
+     * @param map sorted map
+     * @param prefix key prefix
+     * @return view of the map
+     */
+    static <V> SortedMap<String, V> subMap(NavigableMap<String, V> map, String prefix) {
+        // the smallest string that is greater than all strings with the prefix
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                String end = prefix.substring(0, i) + (char) (c + 1);
+                return map.subMap(prefix, true, end, false);
+            }
+        }
+        // prefix is empty or consists of the max chars only
+        return map.tailMap(prefix, true);
+    }
+
+    /**
+     * Creates new snapshot with updated property
+     *
+     * @param key property key
+     * @param value property value
+     * @return new {@link PropertiesSnapshot}
+     */
+    PropertiesSnapshot with(String key, String value) {
+        Map<String, String> updated = new HashMap<>(properties);
+        updated.put(Objects.requireNonNull(key), Objects.requireNonNull(value));
+
+        // keep resolved and typed values that do not depend on the updated key
+        ConcurrentHashMap<String, TypedValue> updatedTyped = new ConcurrentHashMap<>(typed);
+        ConcurrentHashMap<String, String> updatedResolved = new ConcurrentHashMap<>(resolved);
+        // flag is read before the graph is copied, so the copy is complete if the flag is set
+        boolean isComplete = isDependentsComplete;
+        ConcurrentHashMap<String, Set<String>> updatedDependents = new ConcurrentHashMap<>();
+        dependents.forEach((reference, keys) -> {
+            Set<String> copy = ConcurrentHashMap.newKeySet();
+            copy.addAll(keys);
+            updatedDependents.put(reference, copy);
+        });
+        for (String invalidated : getDownstreamKeys(key)) {
+            updatedResolved.remove(invalidated);
+            updatedTyped.remove(invalidated);
+        }
+        if (isComplete) {
+            // references of the previous value are kept: extra dependents cost only a comparison of the equal values
+            registerReferences(updatedDependents, key, value);
+        }
+
+        // sorted index is updated (not re-sorted) if it is already built
+        NavigableMap<String, String> currentSorted = sorted;
+        TreeMap<String, String> updatedSorted = null;
+        if (currentSorted != null) {
+            updatedSorted = new TreeMap<>(currentSorted);
+            updatedSorted.put(key, value);
+        }
+        return new PropertiesSnapshot(defaults, updated, updatedResolved, updatedDependents, isComplete, updatedTyped, updatedSorted);
+    }
+
+    /**
+     * Get key and all keys whose resolved values could be changed by the change of the key, see {@link #resolve(String)}.<br>
+     * Unlike the invalidation of the resolved values, all the keys are needed, so the dependents graph is completed by the references
+     * of all values on the first call and is kept complete by {@link #with(String, String)}
+     *
+     * @param key property key
+     * @return set of keys
+     */
+    Set<String> getAffectedKeys(String key) {
+        if (!isDependentsComplete) {
+            synchronized (this) {
+                if (!isDependentsComplete) {
+                    properties.forEach((k, value) -> registerReferences(dependents, k, value));
+                    isDependentsComplete = true;
+                }
+            }
+        }
+        return getDownstreamKeys(key);
+    }
+
+    private static void registerReferences(ConcurrentHashMap<String, Set<String>> dependents, String key, String value) {
+        for (String reference : PlaceholderResolver.compile(value).getReferences()) {
+            dependents.computeIfAbsent(reference, k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    /**
+     * Get key and all keys that directly or transitively reference it by placeholders
+     *
+     * @param key property key
+     * @return set of keys
+     */
+    private Set<String> getDownstreamKeys(String key) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(key);
+        while (!queue.isEmpty()) {
+            String current = queue.poll();
+            if (visited.add(current)) {
+                queue.addAll(dependents.getOrDefault(current, Set.of()));
+            }
+        }
+        return visited;
+    }
+
+    private static Map<String, String> toMap(Properties properties) {
+        Map<String, String> map = new HashMap<>(properties.size());
+        for (String key : properties.stringPropertyNames()) {
+            map.put(key, properties.getProperty(key));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
+
+/**
+ * Watches file-system-backed {@link R} resource files (and their override layers) and reloads only the changed resources.<br>
+ * Directories that contain resource files are watched by {@link WatchService} and are also polled by comparing modification times
+ * and sizes of the resource files, so changes are detected even if the file system does not support watching.
+ * Resources packed into jars are not watched: they are read once and served from memory on reloads, so only the files of the watched
+ * directories are read again. The classpath is indexed again only when a resource file appears in or disappears from the watched directory.
+ */
+final class PropertiesWatcher implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final String OVERRIDE_SIGN = "_";
+    // time given to the editor to finish writing of the file before it is read
+    private static final long SETTLE_MILLIS = 200;
+
+    private final ClassLoader classLoader;
+    private final Map<R, String> resources;
+    private final BooleanSupplier resolvePlaceholders;
+    private final Consumer<Map<R, PropertiesSnapshot>> publisher;
+    private final long intervalMillis;
+    private final Thread thread;
+    // null if file system does not support watching
+    private final WatchService watchService;
+    // watched directory -> resource file name -> its state
+    private final Map<Path, Map<String, FileState>> directories = new HashMap<>();
+    // properties of the resource files that are not watched (for example, packed into jars)
+    private final Map<URL, Properties> unwatchedProperties = new HashMap<>();
+    private ResourceIndex index;
+    // true if the set of the resource files in the watched directories is changed since the index was built
+    private boolean isIndexOutdated;
+    private volatile boolean isClosed;
+
+    /**
+     * @param classLoader class loader used to find resources
+     * @param resources resource - resource file name (for example config.properties)
+     * @param resolvePlaceholders if returns true, placeholders of the {@link R#CONFIG} will be resolved in advance
+     * @param publisher consumer of the reloaded resources
+     * @param intervalMillis polling interval
+     */
+    PropertiesWatcher(ClassLoader classLoader, Map<R, String> resources, BooleanSupplier resolvePlaceholders,
+            Consumer<Map<R, PropertiesSnapshot>> publisher, long intervalMillis) {
+        this.classLoader = classLoader;
+        this.resources = resources;
+        this.resolvePlaceholders = resolvePlaceholders;
+        this.publisher = publisher;
+        this.intervalMillis = intervalMillis;
+        this.watchService = newWatchService();
+        this.index = ResourceIndex.build(classLoader, resources.values());
+        updateDirectories();
+        this.thread = new Thread(this::run, "carina-properties-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        thread.interrupt();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close watch service.", e);
+            }
+        }
+    }
+
+    private void run() {
+        while (!isClosed) {
+            try {
+                waitForChanges();
+                Set<R> changed = getChangedResources();
+                if (!changed.isEmpty()) {
+                    reload(changed);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to reload properties, previous properties will be used.", e);
+            }
+        }
+    }
+
+    /**
+     * Waits for watch events or polling interval
+     */
+    private void waitForChanges() throws InterruptedException {
+        if (watchService == null) {
+            TimeUnit.MILLISECONDS.sleep(intervalMillis);
+            return;
+        }
+        WatchKey key = watchService.poll(intervalMillis, TimeUnit.MILLISECONDS);
+        if (key == null) {
+            return;
+        }
+        TimeUnit.MILLISECONDS.sleep(SETTLE_MILLIS);
+        // events are used only to wake up, changes are detected by the file states
+        do {
+            key.pollEvents();
+            key.reset();
+        } while ((key = watchService.poll()) != null);
+    }
+
+    /**
+     * Compares current states of the resource files in the watched directories with the known ones
+     */
+    private Set<R> getChangedResources() {
+        Set<R> changed = EnumSet.noneOf(R.class);
+        for (Map.Entry<Path, Map<String, FileState>> entry : directories.entrySet()) {
+            Map<String, FileState> knownStates = entry.getValue();
+            Map<String, FileState> states = getStates(entry.getKey());
+            if (!states.equals(knownStates)) {
+                if (!states.keySet().equals(knownStates.keySet())) {
+                    // override layer is created or deleted
+                    isIndexOutdated = true;
+                }
+                Set<String> names = new HashSet<>(states.keySet());
+                names.addAll(knownStates.keySet());
+                for (String name : names) {
+                    if (!Objects.equals(states.get(name), knownStates.get(name))) {
+                        changed.add(getResource(name));
+                    }
+                }
+                entry.setValue(states);
+            }
+        }
+        return changed;
+    }
+
+    private void reload(Set<R> changed) {
+        if (isIndexOutdated) {
+            index = ResourceIndex.build(classLoader, resources.values());
+            isIndexOutdated = false;
+            updateDirectories();
+        }
+        Map<R, PropertiesSnapshot> snapshots = new EnumMap<>(R.class);
+        for (R resource : changed) {
+            try {
+                PropertiesLoader.Layers layers = PropertiesLoader.readLayers(index, resource.name(), resources.get(resource), this::read);
+                snapshots.put(resource, PropertiesLoader.load(layers, resource.name(), R.CONFIG == resource, resolvePlaceholders.getAsBoolean()));
+            } catch (InvalidConfigurationException e) {
+                LOGGER.warn("Unable to reload '{}' resource, previous properties will be used: {}", resource, e.getMessage());
+            }
+        }
+        if (!snapshots.isEmpty()) {
+            LOGGER.info("Reloaded properties of the changed resources: {}", snapshots.keySet());
+            publisher.accept(snapshots);
+        }
+    }
+
+    /**
+     * Reads resource file. Only files of the watched directories could be changed, so other files are read once
+     */
+    private Properties read(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            return PropertiesLoader.read(url);
+        }
+        Properties properties = unwatchedProperties.get(url);
+        if (properties == null) {
+            properties = PropertiesLoader.read(url);
+            unwatchedProperties.put(url, properties);
+        }
+        return properties;
+    }
+
+    /**
+     * Starts watching of the directories that contain resource files
+     */
+    private void updateDirectories() {
+        for (String resourceFile : resources.values()) {
+            List<URL> urls = new ArrayList<>();
+            try {
+                urls.addAll(index.getResources(resourceFile));
+                URL overrideResource;
+                String overrideName = OVERRIDE_SIGN + resourceFile;
+                while ((overrideResource = index.getResource(overrideName)) != null) {
+                    urls.add(overrideResource);
+                    overrideName = OVERRIDE_SIGN + overrideName;
+                }
+                for (URL url : urls) {
+                    if ("file".equals(url.getProtocol())) {
+                        watch(Path.of(url.toURI()).getParent());
+                    }
+                }
+            } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+                LOGGER.debug("Unable to watch '{}' resource files.", resourceFile, e);
+            }
+        }
+    }
+
+    private void watch(Path directory) throws IOException {
+        if (directories.containsKey(directory)) {
+            return;
+        }
+        if (watchService != null) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        directories.put(directory, getStates(directory));
+    }
+
+    private Map<String, FileState> getStates(Path directory) {
+        Map<String, FileState> states = new HashMap<>();
+        String[] names = directory.toFile().list();
+        for (String name : names == null ? new String[0] : names) {
+            if (getResource(name) != null) {
+                File file = directory.resolve(name).toFile();
+                states.put(name, new FileState(file.lastModified(), file.length()));
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Get resource of the file, for example {@link R#CONFIG} for {@code _config.properties}
+     *
+     * @return {@link R} or null if file is not a resource file
+     */
+    private R getResource(String fileName) {
+        String resourceFile = StringUtils.stripStart(fileName, OVERRIDE_SIGN);
+        for (Map.Entry<R, String> entry : resources.entrySet()) {
+            if (entry.getValue().equals(resourceFile)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private static WatchService newWatchService() {
+        try {
+            return FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.debug("File system does not support watching, resource files will be polled.", e);
+            return null;
+        }
+    }
+
+    private static final class FileState {
+        private final long lastModified;
+        private final long length;
+
+        private FileState(long lastModified, long length) {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FileState)) {
+                return false;
+            }
+            FileState fileState = (FileState) o;
+            return lastModified == fileState.lastModified && length == fileState.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(lastModified) * 31 + Long.hashCode(length);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+/**
+ * Change of the global property of the {@link R} resource, see {@link R#addListener(IPropertyChangeListener)}
+ */
+public final class PropertyChange {
+    private final R resource;
+    private final String key;
+    private final String oldValue;
+    private final String newValue;
+
+    PropertyChange(R resource, String key, String oldValue, String newValue) {
+        this.resource = resource;
+        this.key = key;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public R getResource() {
+        return resource;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return previous value (with resolved placeholders for {@link R#CONFIG}) or null if property was missing
+     */
+    public String getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * @return new value (with resolved placeholders for {@link R#CONFIG}) or null if property was removed
+     */
+    public String getNewValue() {
+        return newValue;
+    }
+
+    @Override
+    public String toString() {
+        return resource + ": " + key + " '" + oldValue + "' -> '" + newValue + "'";
+    }
+}
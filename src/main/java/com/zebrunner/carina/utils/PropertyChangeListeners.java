@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zebrunner.carina.utils.exception.PlaceholderResolverException;
+
+/**
+ * Registry of the {@link IPropertyChangeListener}s of the {@link R} resources.<br>
+ * Changes are calculated by comparing snapshots before and after publication, and only for the resources that have listeners.
+ * Single-key updates compare only the updated key and the keys that reference it, reloads compare all keys of the changed resources.
+ */
+final class PropertyChangeListeners {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    PropertyChangeSubscription add(R resource, Predicate<String> keyFilter, IPropertyChangeListener listener) {
+        Registration registration = new Registration(resource, Objects.requireNonNull(keyFilter), Objects.requireNonNull(listener));
+        registrations.add(registration);
+        return new PropertyChangeSubscription(() -> registrations.remove(registration));
+    }
+
+    /**
+     * Notifies listeners about differences between snapshots. All keys of the changed snapshots are compared,
+     * so it is intended for reloads, where any key could be changed
+     *
+     * @param oldSnapshots resource - snapshot before the change
+     * @param newSnapshots resource - snapshot after the change
+     */
+    void fire(Map<R, PropertiesSnapshot> oldSnapshots, Map<R, PropertiesSnapshot> newSnapshots) {
+        if (registrations.isEmpty()) {
+            return;
+        }
+        for (R resource : R.values()) {
+            PropertiesSnapshot oldSnapshot = oldSnapshots.getOrDefault(resource, PropertiesSnapshot.EMPTY);
+            PropertiesSnapshot newSnapshot = newSnapshots.getOrDefault(resource, PropertiesSnapshot.EMPTY);
+            if (oldSnapshot == newSnapshot) {
+                continue;
+            }
+            List<Registration> resourceRegistrations = getRegistrations(resource);
+            if (resourceRegistrations.isEmpty()) {
+                continue;
+            }
+            Set<String> keys = new HashSet<>(oldSnapshot.asMap().keySet());
+            keys.addAll(newSnapshot.asMap().keySet());
+            fire(resource, resourceRegistrations, oldSnapshot, newSnapshot, keys);
+        }
+    }
+
+    /**
+     * Notifies listeners about the change of the single key of the resource. Only the key and the keys that reference it
+     * by placeholders are compared
+     *
+     * @param resource changed resource
+     * @param key changed key
+     * @param oldSnapshots resource - snapshot before the change
+     * @param newSnapshots resource - snapshot after the change
+     */
+    void fire(R resource, String key, Map<R, PropertiesSnapshot> oldSnapshots, Map<R, PropertiesSnapshot> newSnapshots) {
+        if (registrations.isEmpty()) {
+            return;
+        }
+        List<Registration> resourceRegistrations = getRegistrations(resource);
+        if (resourceRegistrations.isEmpty()) {
+            return;
+        }
+        PropertiesSnapshot newSnapshot = newSnapshots.getOrDefault(resource, PropertiesSnapshot.EMPTY);
+        // placeholders are resolved only for CONFIG, see getValue(R, PropertiesSnapshot, String)
+        Set<String> keys = R.CONFIG == resource ? newSnapshot.getAffectedKeys(key) : Set.of(key);
+        fire(resource, resourceRegistrations, oldSnapshots.getOrDefault(resource, PropertiesSnapshot.EMPTY), newSnapshot, keys);
+    }
+
+    private List<Registration> getRegistrations(R resource) {
+        List<Registration> resourceRegistrations = new ArrayList<>();
+        for (Registration registration : registrations) {
+            if (registration.resource == resource) {
+                resourceRegistrations.add(registration);
+            }
+        }
+        return resourceRegistrations;
+    }
+
+    private static void fire(R resource, List<Registration> resourceRegistrations, PropertiesSnapshot oldSnapshot,
+            PropertiesSnapshot newSnapshot, Set<String> keys) {
+        List<Registration> listeners = new ArrayList<>();
+        for (String key : keys) {
+            // filters are cheaper than placeholders resolution, so values are resolved only for the listened keys
+            listeners.clear();
+            for (Registration registration : resourceRegistrations) {
+                if (registration.keyFilter.test(key)) {
+                    listeners.add(registration);
+                }
+            }
+            if (listeners.isEmpty()) {
+                continue;
+            }
+            String oldValue = getValue(resource, oldSnapshot, key);
+            String newValue = getValue(resource, newSnapshot, key);
+            if (!Objects.equals(oldValue, newValue)) {
+                fire(listeners, new PropertyChange(resource, key, oldValue, newValue));
+            }
+        }
+    }
+
+    private static void fire(List<Registration> listeners, PropertyChange change) {
+        for (Registration registration : listeners) {
+            try {
+                registration.listener.onChange(change);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Property change listener failed on '{}' change.", change.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Get value as {@link R#get(String)} returns it, but without current test properties
+     */
+    private static String getValue(R resource, PropertiesSnapshot snapshot, String key) {
+        if (R.CONFIG != resource) {
+            return snapshot.get(key);
+        }
+        try {
+            return snapshot.resolve(key);
+        } catch (PlaceholderResolverException e) {
+            return snapshot.get(key);
+        }
+    }
+
+    private static final class Registration {
+        private final R resource;
+        private final Predicate<String> keyFilter;
+        private final IPropertyChangeListener listener;
+
+        private Registration(R resource, Predicate<String> keyFilter, IPropertyChangeListener listener) {
+            this.resource = resource;
+            this.keyFilter = keyFilter;
+            this.listener = listener;
+        }
+    }
+}
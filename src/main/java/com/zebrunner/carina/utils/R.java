@@ -15,14 +15,18 @@
  *******************************************************************************/
 package com.zebrunner.carina.utils;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
-import java.net.URL;
-import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.ConcurrentException;
@@ -31,9 +35,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.zebrunner.carina.utils.commons.SpecialKeywords;
 import com.zebrunner.carina.utils.encryptor.EncryptorUtils;
-import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
 
 /**
  * R - loads properties from resource files.
@@ -57,7 +59,7 @@ public enum R {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-    private static final String OVERRIDE_SIGN = "_";
+    private static final String EAGER_PLACEHOLDERS = "carina_eager_placeholders";
 
     private final String resourceFile;
 
@@ -79,130 +81,149 @@ public enum R {
     };
 
     // temporary thread/test properties which is cleaned on afterTest phase for current thread. It can override any value from below R enum maps
-    private static ThreadLocal<Properties> testProperties = new ThreadLocal<>();
-    private static final ThreadLocal<Map<String, String>> PROPERTY_OVERWRITE_NOTIFICATIONS = new ThreadLocal<>();
+    // Each overridden property keeps its own notification state, so reads of the overridden property take a single lookup
+    private static ThreadLocal<TestProperties> testProperties = new ThreadLocal<>();
 
-    private static Map<String, Properties> defaultPropertiesHolder = new HashMap<>();
-    // permanent global configuration map
-    private static Map<String, Properties> propertiesHolder = new HashMap<>();
+    // permanent global configuration: immutable snapshot per resource, replaced atomically on put/reinit (copy-on-write)
+    private static final AtomicReference<Map<R, PropertiesSnapshot>> SNAPSHOTS = new AtomicReference<>(new EnumMap<>(R.class));
+
+    // source of the unique versions of the properties, see getVersion()
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    // version of the global configuration, changed right after new snapshots are published
+    private static volatile long globalVersion = VERSIONS.incrementAndGet();
+
+    // values put globally at runtime, they are applied on top of the reloaded resource files, see publish(Map)
+    private static final Map<R, Map<String, String>> RUNTIME_VALUES = new ConcurrentHashMap<>();
+
+    // listeners of the global configuration changes
+    private static final PropertyChangeListeners LISTENERS = new PropertyChangeListeners();
+
+    private static final String WATCH_PROPERTIES = "carina_properties_watch";
+    private static final long WATCH_INTERVAL_MILLIS = 2000;
+    // null if resource files are not watched
+    private static PropertiesWatcher watcher;
+    // placeholders mode of the last reinit, used to reload changed resources in the same way
+    private static volatile boolean isPlaceholdersResolved;
 
     // init global configuration map statically
     static {
         reinit();
+        if (Boolean.parseBoolean(System.getProperty(WATCH_PROPERTIES))) {
+            startWatching();
+        }
     }
 
+    /**
+     * Reload all resources. Placeholders of {@link #CONFIG} are resolved in advance
+     * if {@code carina_eager_placeholders} java argument is true, see {@link #reinit(boolean)}
+     */
     public static void reinit() {
-        for (R resource : values()) {
-            try {
-                Properties properties = new Properties();
-
-                if (isResourceExists(resource.resourceFile)) {
-                    Properties collectedProperties = collect(resource.resourceFile);
-                    properties.putAll(collectedProperties);
-                    defaultPropertiesHolder.put(resource.resourceFile, collectedProperties);
-                }
-
-                URL overrideResource;
-                StringBuilder resourceNameBuilder = new StringBuilder(OVERRIDE_SIGN + resource.resourceFile);
-                while ((overrideResource = CLASS_LOADER.get().getResource(resourceNameBuilder.toString())) != null) {
-                    try (InputStream resourceStream = overrideResource.openStream()) {
-                        properties.load(resourceStream);
-                        resourceNameBuilder.insert(0, OVERRIDE_SIGN);
-                    }
-                }
-
-                // Overrides properties by env variables
-                for (Object key : properties.keySet()) {
-                    String systemValue = System.getenv((String) key);
-                    if (!StringUtils.isEmpty(systemValue)) {
-                        properties.put(key, systemValue);
-                    }
-                }
+        reinit(Boolean.parseBoolean(System.getProperty(EAGER_PLACEHOLDERS)));
+    }
 
-                // Overrides properties by systems properties (java arguments)
-                for (Object key : properties.keySet()) {
-                    String systemValue = System.getProperty((String) key);
-                    if (!StringUtils.isEmpty(systemValue)) {
-                        properties.put(key, systemValue);
-                    }
-                }
-                if (resource.resourceFile.contains(CONFIG.resourceFile)) {
-                    // no need to read env variables using System.getenv()
-                    final String prefix = SpecialKeywords.CAPABILITIES + ".";
-
-                    // read all java arguments and redefine capabilities.* items
-                    @SuppressWarnings({ "unchecked", "rawtypes" })
-                    Map<String, String> javaProperties = new HashMap(System.getProperties());
-                    for (Map.Entry<String, String> entry : javaProperties.entrySet()) {
-                        String key = entry.getKey();
-                        if (key.toLowerCase().startsWith(prefix)) {
-                            String value = entry.getValue();
-                            if (!StringUtils.isEmpty(value) && !value.equalsIgnoreCase(SpecialKeywords.NULL)) {
-                                properties.put(key, value);
-                            }
-                        }
-                    }
-                    // delete all empty or null capabilites.* items from properties
-                    for (Map.Entry<Object, Object> entry : properties.entrySet()) {
-                        String key = (String) entry.getKey();
-                        String value = (String) entry.getValue();
-                        if (key.toLowerCase().startsWith(prefix) &&
-                                (StringUtils.isBlank(value) || value.equalsIgnoreCase(SpecialKeywords.NULL))) {
-                            properties.remove(key, value);
-
-                        }
-                    }
-                }
-                propertiesHolder.put(resource.resourceFile, properties);
-            } catch (Exception e) {
-                throw new InvalidConfigurationException("Invalid config in '" + resource + "': " + e.getMessage());
-            }
+    /**
+     * Reload all resources
+     *
+     * @param resolvePlaceholders if true, all placeholders of {@link #CONFIG} will be resolved right now, so
+     *            reads will not resolve them. Missing and looped references are reported at once by
+     *            {@link com.zebrunner.carina.utils.exception.InvalidConfigurationException}
+     */
+    public static void reinit(boolean resolvePlaceholders) {
+        Map<R, String> resources = getResourceFiles();
+        isPlaceholdersResolved = resolvePlaceholders;
+        // reinit drops values put at runtime
+        RUNTIME_VALUES.clear();
+        // bundles are loaded concurrently and published all at once, so readers never see partially reinitialized configuration
+        try {
+            Map<R, PropertiesSnapshot> updated = new EnumMap<>(PropertiesLoader.loadAll(CLASS_LOADER.get(), resources, CONFIG, resolvePlaceholders));
+            Map<R, PropertiesSnapshot> previous = SNAPSHOTS.getAndSet(updated);
+            globalVersion = VERSIONS.incrementAndGet();
+            // published map is compared, as snapshots could be replaced by concurrent put before listeners are notified
+            LISTENERS.fire(previous, updated);
+        } catch (ConcurrentException e) {
+            ExceptionUtils.rethrow(e);
         }
     }
 
     /**
-     * Checks for the presence of at least one resource in the classpath
-     * 
-     * @param resourceName the name of the resource being searched for
-     * @return true if at least one resource found, false otherwise
+     * Starts watching of the resource files located in the file system (not in jars). Changed resources (including override layers)
+     * are reloaded and published atomically, other resources are not re-read. Watching is started automatically
+     * if {@code carina_properties_watch} java argument is true. Call has no effect if watching is already started.
      */
-    private static boolean isResourceExists(String resourceName) {
+    public static synchronized void startWatching() {
+        if (watcher != null) {
+            return;
+        }
         try {
-            return CLASS_LOADER.get().getResource(resourceName) != null;
-        }catch (ConcurrentException e) {
-            return ExceptionUtils.rethrow(e);
+            watcher = new PropertiesWatcher(CLASS_LOADER.get(), getResourceFiles(), () -> isPlaceholdersResolved, R::publish,
+                    WATCH_INTERVAL_MILLIS);
+            watcher.start();
+        } catch (ConcurrentException e) {
+            ExceptionUtils.rethrow(e);
         }
     }
 
     /**
-     * Collect all properties with the same name into a single Properties object
-     * 
-     * @param resourceName resource name, for example config.properties
-     * @return collected properties
+     * Stops watching of the resource files, see {@link #startWatching()}
      */
-    private static Properties collect(String resourceName) throws IOException {
-        try {
-            Properties assembledProperties = new Properties();
-            Enumeration<URL> resourceURLs = CLASS_LOADER.get().getResources(resourceName);
-            while (resourceURLs.hasMoreElements()) {
-                Properties tempProperties = new Properties();
-                URL url = resourceURLs.nextElement();
-
-                try (InputStream stream = url.openStream()) {
-                    tempProperties.load(stream);
-                    assembledProperties.putAll(tempProperties);
+    public static synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Publishes new snapshots of the resources atomically. Snapshots of other resources are kept.
+     * Values put globally at runtime (see {@link #put(String, String)}) are applied on top of the new snapshots,
+     * so they are kept when the resource files are reloaded
+     *
+     * @param snapshots resource - new snapshot
+     */
+    static void publish(Map<R, PropertiesSnapshot> snapshots) {
+        Map<R, PropertiesSnapshot> previous;
+        Map<R, PropertiesSnapshot> updated;
+        do {
+            previous = SNAPSHOTS.get();
+            updated = new EnumMap<>(R.class);
+            updated.putAll(previous);
+            for (Map.Entry<R, PropertiesSnapshot> entry : snapshots.entrySet()) {
+                PropertiesSnapshot snapshot = entry.getValue();
+                for (Map.Entry<String, String> runtimeValue : RUNTIME_VALUES.getOrDefault(entry.getKey(), Map.of()).entrySet()) {
+                    snapshot = snapshot.with(runtimeValue.getKey(), runtimeValue.getValue());
                 }
+                updated.put(entry.getKey(), snapshot);
             }
-            return assembledProperties;
-        }catch (ConcurrentException e) {
-            return ExceptionUtils.rethrow(e);
+        } while (!SNAPSHOTS.compareAndSet(previous, updated));
+        globalVersion = VERSIONS.incrementAndGet();
+        LISTENERS.fire(previous, updated);
+    }
+
+    private static Map<R, String> getResourceFiles() {
+        Map<R, String> resources = new EnumMap<>(R.class);
+        for (R resource : values()) {
+            resources.put(resource, resource.resourceFile);
         }
+        return resources;
     }
 
     R(String resourceKey) {
         this.resourceFile = resourceKey;
     }
 
+    /**
+     * Get current immutable snapshot of the resource properties
+     *
+     * @return {@link PropertiesSnapshot}
+     */
+    PropertiesSnapshot snapshot() {
+        return snapshot(SNAPSHOTS.get());
+    }
+
+    private PropertiesSnapshot snapshot(Map<R, PropertiesSnapshot> snapshots) {
+        return snapshots.getOrDefault(this, PropertiesSnapshot.EMPTY);
+    }
+
     /**
      * Compares the current value of property with the default value
      * 
@@ -211,7 +232,7 @@ public enum R {
      */
     public boolean isOverwritten(String key) {
         String currentValue = get(key);
-        String defaultValue = defaultPropertiesHolder.get(resourceFile).getProperty(key);
+        String defaultValue = snapshot().getDefault(key);
         if (defaultValue == null) {
             defaultValue = StringUtils.EMPTY;
         }
@@ -243,9 +264,21 @@ public enum R {
 
             // declare temporary property key
             getTestProperties().put(key, value);
+            ConfigurationMetrics.onOverride(this, key);
         } else {
-            // override globally configuration map property
-            propertiesHolder.get(resourceFile).put(key, value);
+            // override globally configuration map property: publish new snapshot of the resource.
+            // value is remembered before publication, so concurrent reload of the resource files could not drop it
+            RUNTIME_VALUES.computeIfAbsent(this, k -> new ConcurrentHashMap<>()).put(key, value);
+            Map<R, PropertiesSnapshot> previous;
+            Map<R, PropertiesSnapshot> updated;
+            do {
+                previous = SNAPSHOTS.get();
+                updated = new EnumMap<>(R.class);
+                updated.putAll(previous);
+                updated.put(this, snapshot(previous).with(key, value));
+            } while (!SNAPSHOTS.compareAndSet(previous, updated));
+            globalVersion = VERSIONS.incrementAndGet();
+            LISTENERS.fire(this, key, previous, updated);
         }
     }
 
@@ -256,7 +289,7 @@ public enum R {
      * @return boolean
      */
     public boolean containsKey(String key) {
-        return propertiesHolder.get(resourceFile).containsKey(key) || getTestProperties().containsKey(key);
+        return snapshot().containsKey(key) || getTestProperties().containsKey(key);
     }
 
     /**
@@ -268,22 +301,14 @@ public enum R {
      * @return config value
      */
     public String get(String key) {
-        String value = getTestProperties().getProperty(key);
-        if (value != null) {
-            if (PROPERTY_OVERWRITE_NOTIFICATIONS.get() == null) {
-                PROPERTY_OVERWRITE_NOTIFICATIONS.set(new HashMap<>());
-            }
-            // do not warn user about this system property update
-            if (!(PROPERTY_OVERWRITE_NOTIFICATIONS.get().containsKey(key) &&
-                            value.equals(PROPERTY_OVERWRITE_NOTIFICATIONS.get().get(key)))) {
-                LOGGER.warn("Overridden '{}={}' property will be used for current test!", key, value);
-                PROPERTY_OVERWRITE_NOTIFICATIONS.get().put(key, value);
-            }
-            return value;
+        TestProperties.Entry override = getOverride(key);
+        ConfigurationMetrics.onRead(this, key, override != null);
+        if (override != null) {
+            return override.getValue();
         }
 
-        value = CONFIG.resourceFile.equals(resourceFile) ? PlaceholderResolver.resolve(propertiesHolder.get(resourceFile), key)
-                : propertiesHolder.get(resourceFile).getProperty(key);
+        PropertiesSnapshot snapshot = snapshot();
+        String value = CONFIG == this ? snapshot.resolve(key) : snapshot.get(key);
 
         // [VD] Decryption is prohibited here otherwise we have plain sensitive information in logs!
 
@@ -310,7 +335,7 @@ public enum R {
      * @return value Integer
      */
     public int getInt(String key) {
-        return Integer.parseInt(get(key));
+        return getTyped(key).getInt();
     }
 
     /**
@@ -320,7 +345,7 @@ public enum R {
      * @return value long
      */
     public long getLong(String key) {
-        return Long.parseLong(get(key));
+        return getTyped(key).getLong();
     }
 
     /**
@@ -330,7 +355,7 @@ public enum R {
      * @return value Double
      */
     public double getDouble(String key) {
-        return Double.parseDouble(get(key));
+        return getTyped(key).getDouble();
     }
 
     /**
@@ -340,7 +365,116 @@ public enum R {
      * @return value boolean
      */
     public boolean getBoolean(String key) {
-        return Boolean.valueOf(get(key));
+        return getTyped(key).getBoolean();
+    }
+
+    /**
+     * Adds listener of the changes of any global property of the resource
+     *
+     * @param listener {@link IPropertyChangeListener}
+     * @return {@link PropertyChangeSubscription} that could be used to remove listener
+     */
+    public PropertyChangeSubscription addListener(IPropertyChangeListener listener) {
+        return addListener(key -> true, listener);
+    }
+
+    /**
+     * Adds listener of the changes of the global property of the resource
+     *
+     * @param key property key
+     * @param listener {@link IPropertyChangeListener}
+     * @return {@link PropertyChangeSubscription} that could be used to remove listener
+     */
+    public PropertyChangeSubscription addListener(String key, IPropertyChangeListener listener) {
+        Objects.requireNonNull(key);
+        return addListener(key::equals, listener);
+    }
+
+    /**
+     * Adds listener of the changes of the global properties of the resource whose keys start with the prefix,
+     * for example {@code capabilities.}
+     *
+     * @param prefix key prefix
+     * @param listener {@link IPropertyChangeListener}
+     * @return {@link PropertyChangeSubscription} that could be used to remove listener
+     */
+    public PropertyChangeSubscription addPrefixListener(String prefix, IPropertyChangeListener listener) {
+        Objects.requireNonNull(prefix);
+        return addListener(key -> key.startsWith(prefix), listener);
+    }
+
+    /**
+     * Adds listener of the changes of the global properties of the resource whose keys match the filter
+     *
+     * @param keyFilter filter of the property keys
+     * @param listener {@link IPropertyChangeListener}
+     * @return {@link PropertyChangeSubscription} that could be used to remove listener
+     */
+    public PropertyChangeSubscription addListener(Predicate<String> keyFilter, IPropertyChangeListener listener) {
+        return LISTENERS.add(this, keyFilter, listener);
+    }
+
+    /**
+     * Get version of the properties visible to the current thread: global properties of all resources and current test properties.<br>
+     * Version is changed after any modification of the properties (put, reinit or test properties modification) and the same version
+     * is never assigned to different properties, so it could be used to detect that data calculated from the properties is stale.
+     * Version should be read before the properties are read.
+     *
+     * @return version
+     */
+    public static long getVersion() {
+        long version = globalVersion;
+        TestProperties properties = testProperties.get();
+        if (properties == null || properties.isEmpty()) {
+            // current thread sees only global properties
+            return version;
+        }
+        return properties.getVersion(version, VERSIONS);
+    }
+
+    /**
+     * Get version of the global properties of all resources, ignoring test properties of the current thread, see {@link #getVersion()}.<br>
+     * <b>for internal usage only</b>
+     *
+     * @return version
+     */
+    public static long getGlobalVersion() {
+        return globalVersion;
+    }
+
+    /**
+     * Get value with memoized primitive representations, so typed getters parse the value only once
+     * until it is changed by put, reinit or test override
+     *
+     * @param key Requested key
+     * @return {@link TypedValue}
+     */
+    private TypedValue getTyped(String key) {
+        TestProperties.Entry override = getOverride(key);
+        ConfigurationMetrics.onRead(this, key, override != null);
+        if (override != null) {
+            return override.getTypedValue();
+        }
+        return snapshot().getTyped(key, CONFIG == this);
+    }
+
+    /**
+     * Get property overridden for current test
+     *
+     * @param key Requested key
+     * @return {@link TestProperties.Entry} or null if property is not overridden
+     */
+    private static TestProperties.Entry getOverride(String key) {
+        TestProperties.Entry override = currentTestProperties().getEntry(key);
+        if (override == null || override.getValue() == null) {
+            return null;
+        }
+        // do not warn user about this system property update
+        if (!override.isNotified()) {
+            LOGGER.warn("Overridden '{}={}' property will be used for current test!", key, override.getValue());
+            override.setNotified();
+        }
+        return override;
     }
 
     public static String getResourcePath(String resource) {
@@ -354,45 +488,63 @@ public enum R {
         }
     }
 
+    /**
+     * Get properties of the resource: current test properties over the global properties.<br>
+     * Returned object is a detached modifiable copy, its changes do not affect the configuration.
+     * Use {@link #getPropertiesView()} if properties are only read, it does not copy them.
+     *
+     * @return {@link Properties}
+     */
     public Properties getProperties() {
-        Properties globalProp = new Properties();
-        globalProp.putAll(propertiesHolder.get(resourceFile));
-        // Glodal properties will be updated with test specific properties
-        if (!getTestProperties().isEmpty()) {
-            Properties testProp = testProperties.get();
-            LOGGER.debug("CurrentTestOnly properties has [{}] entries.", testProp.size());
-            LOGGER.debug("{}", testProp);
-            @SuppressWarnings({ "unchecked", "rawtypes" })
-            Map<String, String> testCapabilitiesMap = new HashMap(testProp);
-            testCapabilitiesMap.keySet().stream().forEach(i -> {
-                if (globalProp.containsKey(i)) {
-                    LOGGER.debug(String.format(
-                            "Global properties already contains key --- %s --- with value --- %s ---. Global property will be overridden by  --- %s --- from test properties.",
-                            i, globalProp.get(i), testProp.get(i)));
-                } else {
-                    LOGGER.debug(String.format(
-                            "Global properties isn't contains key --- %s ---.  Global key --- %s --- will be set to --- %s ---  from test properties.",
-                            i, i, testProp.get(i)));
-                }
-                globalProp.setProperty(i, (String) testProp.get(i));
-            });
+        return getPropertiesView().materialize();
+    }
+
+    /**
+     * Get read-only view of the properties of the resource: current test properties over the global properties.<br>
+     * View does not copy properties and reflects the current test properties of the calling thread, but not the later
+     * changes of the global configuration (reinit or global put). Any attempt to modify the view throws {@link UnsupportedOperationException}.
+     *
+     * @return {@link LayeredProperties}
+     */
+    public LayeredProperties getPropertiesView() {
+        return new LayeredProperties(snapshot().asMap(), getTestProperties());
+    }
+
+    /**
+     * Get properties whose keys start with the prefix (for example {@code capabilities.}): current test properties over the global properties.<br>
+     * Global properties are looked up in the sorted index, so the cost depends on the number of the matching properties only.
+     * Values are returned as is, like in {@link #getProperties()}.
+     *
+     * @param prefix key prefix
+     * @return read-only sorted map
+     */
+    public SortedMap<String, String> getByPrefix(String prefix) {
+        SortedMap<String, String> global = snapshot().getByPrefix(Objects.requireNonNull(prefix));
+        SortedMap<String, String> overrides = currentTestProperties().getByPrefix(prefix);
+        if (overrides.isEmpty()) {
+            return global;
         }
-        return globalProp;
+        SortedMap<String, String> merged = new TreeMap<>(global);
+        merged.putAll(overrides);
+        return Collections.unmodifiableSortedMap(merged);
     }
 
     public void clearTestProperties() {
         testProperties.remove();
-        PROPERTY_OVERWRITE_NOTIFICATIONS.remove();
     }
 
     public Properties getTestProperties() {
-        if (testProperties.get() == null) {
+        return currentTestProperties();
+    }
+
+    private static TestProperties currentTestProperties() {
+        TestProperties properties = testProperties.get();
+        if (properties == null) {
             // init temporary properties at first call
-            Properties properties = new Properties();
+            properties = new TestProperties();
             testProperties.set(properties);
         }
-
-        return testProperties.get();
+        return properties;
     }
 
 }
@@ -0,0 +1,361 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the root-level classpath resources with names like {@code config.properties}, {@code _config.properties},
+ * {@code __config.properties} and so on.<br>
+ * Index is built by a single walk over the classpath entries of the class loader and its parents (parents first, as they are
+ * asked first by the class loader), so all lookups of the {@link R} resources (and all override levels) do not probe the class loader.
+ * Every entry is only probed by the resource names, so jars are never enumerated, and results are kept per jar until it is changed.
+ * If any class loader of the chain could not be introspected (it is not the application class loader or {@link URLClassLoader})
+ * or any classpath entry is not a local file or directory (for example, nested jar or remote url),
+ * lookups are delegated to the class loader, so no resources are missed.
+ */
+final class ResourceIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final String OVERRIDE_SIGN = "_";
+
+    // jar path -> found resources and manifest classpath. Jars are rarely changed during the run, so they are read only once
+    private static final Map<String, JarContent> JAR_CONTENTS = new ConcurrentHashMap<>();
+
+    private final ClassLoader classLoader;
+    // resource name -> resource urls in classpath order. Null if class loader is not indexed
+    private final Map<String, List<URL>> resources;
+
+    private ResourceIndex(ClassLoader classLoader, Map<String, List<URL>> resources) {
+        this.classLoader = classLoader;
+        this.resources = resources;
+    }
+
+    /**
+     * Builds index of the resources whose names are the base names prefixed by any number of {@code _} signs
+     *
+     * @param classLoader class loader
+     * @param baseNames names of the resources, for example {@code config.properties}
+     * @return {@link ResourceIndex}
+     */
+    static ResourceIndex build(ClassLoader classLoader, Collection<String> baseNames) {
+        List<URL> classpath = getClasspath(classLoader);
+        if (classpath == null || classpath.isEmpty()) {
+            return new ResourceIndex(classLoader, null);
+        }
+        Map<String, List<URL>> resources = new HashMap<>();
+        Set<URL> visited = new HashSet<>();
+        Deque<URL> queue = new ArrayDeque<>(classpath);
+        try {
+            while (!queue.isEmpty()) {
+                URL entry = queue.poll();
+                if (!visited.add(entry)) {
+                    continue;
+                }
+                if (!"file".equals(entry.getProtocol())) {
+                    LOGGER.debug("Classpath entry '{}' could not be indexed, resources will be searched by class loader.", entry);
+                    return new ResourceIndex(classLoader, null);
+                }
+                Path path = Path.of(entry.toURI());
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // missing classpath entries are ignored by the class loader as well
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    for (String baseName : baseNames) {
+                        for (String name : probeDirectory(path, baseName)) {
+                            resources.computeIfAbsent(name, k -> new ArrayList<>()).add(path.resolve(name).toUri().toURL());
+                        }
+                    }
+                } else if (attributes.isRegularFile()) {
+                    JarContent content = getJarContent(path, attributes, baseNames);
+                    for (String baseName : baseNames) {
+                        for (String name : content.names.get(baseName)) {
+                            resources.computeIfAbsent(name, k -> new ArrayList<>()).add(new URL("jar:" + path.toUri() + "!/" + name));
+                        }
+                    }
+                    // classpath from the manifest is loaded right after the jar
+                    for (int i = content.classpath.size() - 1; i >= 0; i--) {
+                        queue.addFirst(new URL(entry, content.classpath.get(i)));
+                    }
+                }
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            LOGGER.debug("Unable to index classpath, resources will be searched by class loader.", e);
+            return new ResourceIndex(classLoader, null);
+        }
+        if (resources.isEmpty()) {
+            // nothing found: it is safer to ask class loader directly
+            return new ResourceIndex(classLoader, null);
+        }
+        return new ResourceIndex(classLoader, resources);
+    }
+
+    /**
+     * Get the first resource with the specified name
+     *
+     * @param name resource name
+     * @return {@link URL} or null if there are no such resource
+     */
+    URL getResource(String name) {
+        if (resources == null) {
+            return classLoader.getResource(name);
+        }
+        List<URL> urls = resources.get(name);
+        return urls == null ? null : urls.get(0);
+    }
+
+    /**
+     * Get all resources with the specified name
+     *
+     * @param name resource name
+     * @return list of {@link URL} in classpath order
+     * @throws IOException if class loader is not indexed and I/O error occurs
+     */
+    List<URL> getResources(String name) throws IOException {
+        if (resources == null) {
+            return Collections.list(classLoader.getResources(name));
+        }
+        return resources.getOrDefault(name, List.of());
+    }
+
+    /**
+     * @return true if resources are answered from the index, false if they are delegated to the class loader
+     */
+    boolean isIndexed() {
+        return resources != null;
+    }
+
+    /**
+     * Exports known jar contents, so they could be stored and reused by another JVM, see {@link #importJarContents(Map)}
+     *
+     * @return jar key - jar content
+     */
+    static Map<String, String> exportJarContents() {
+        Map<String, String> contents = new HashMap<>();
+        JAR_CONTENTS.forEach((path, content) -> {
+            StringBuilder value = new StringBuilder(String.join(" ", content.classpath));
+            // base name and found names, names of the root-level entries could not contain '/'
+            content.names.forEach((baseName, names) -> value.append('\n').append(baseName)
+                    .append(names.stream().map(name -> "/" + name).collect(Collectors.joining())));
+            contents.put(content.lastModified + "|" + content.length + "|" + path, value.toString());
+        });
+        return contents;
+    }
+
+    /**
+     * Imports jar contents exported by {@link #exportJarContents()}. Jars that have been changed since export will be re-read
+     *
+     * @param contents jar key - jar content
+     */
+    static void importJarContents(Map<String, String> contents) {
+        contents.forEach((key, value) -> {
+            String[] keyParts = StringUtils.split(key, "|", 3);
+            String[] valueParts = StringUtils.splitPreserveAllTokens(value, "\n");
+            if (keyParts.length != 3 || valueParts.length == 0) {
+                return;
+            }
+            Map<String, List<String>> names = new HashMap<>();
+            for (int i = 1; i < valueParts.length; i++) {
+                String[] nameParts = StringUtils.split(valueParts[i], '/');
+                if (nameParts.length > 0) {
+                    names.put(nameParts[0], List.of(Arrays.copyOfRange(nameParts, 1, nameParts.length)));
+                }
+            }
+            try {
+                JAR_CONTENTS.putIfAbsent(keyParts[2], new JarContent(Long.parseLong(keyParts[0]), Long.parseLong(keyParts[1]),
+                        Arrays.asList(StringUtils.split(valueParts[0])), names));
+            } catch (NumberFormatException e) {
+                // ignore corrupted record, jar will be read
+            }
+        });
+    }
+
+    /**
+     * Forgets known jar contents, so the next build reads jars again as on the first start
+     */
+    static void clearJarContents() {
+        JAR_CONTENTS.clear();
+    }
+
+    /**
+     * Get names of the resource and its overrides ({@code config.properties}, {@code _config.properties} and so on)
+     * found in the directory. Like the lookups of {@link PropertiesLoader}, override levels are probed until the first missing one
+     */
+    private static List<String> probeDirectory(Path directory, String baseName) {
+        List<String> names = new ArrayList<>();
+        String name = baseName;
+        if (Files.isRegularFile(directory.resolve(name))) {
+            names.add(name);
+        }
+        while (Files.isRegularFile(directory.resolve(name = OVERRIDE_SIGN + name))) {
+            names.add(name);
+        }
+        return names;
+    }
+
+    /**
+     * Get content of the jar, reading it only if it is not known yet, has been changed or was not probed for some of base names.
+     * Only one content is kept per jar path, so the changed jar replaces its outdated content
+     */
+    private static JarContent getJarContent(Path path, BasicFileAttributes attributes, Collection<String> baseNames) {
+        String key = path.toAbsolutePath().toString();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long length = attributes.size();
+        JarContent content = JAR_CONTENTS.get(key);
+        if (content != null && content.lastModified == lastModified && content.length == length
+                && content.names.keySet().containsAll(baseNames)) {
+            return content;
+        }
+        Map<String, List<String>> names = new HashMap<>();
+        if (content != null && content.lastModified == lastModified && content.length == length) {
+            names.putAll(content.names);
+        }
+        List<String> classpath = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(path.toFile())) {
+            Manifest manifest = jarFile.getManifest();
+            if (manifest != null) {
+                String manifestClasspath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+                if (manifestClasspath != null) {
+                    classpath.addAll(Arrays.asList(StringUtils.split(manifestClasspath)));
+                }
+            }
+            for (String baseName : baseNames) {
+                names.computeIfAbsent(baseName, k -> probeJar(jarFile, k));
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read '{}' classpath entry.", path, e);
+            for (String baseName : baseNames) {
+                names.putIfAbsent(baseName, List.of());
+            }
+        }
+        content = new JarContent(lastModified, length, classpath, names);
+        JAR_CONTENTS.put(key, content);
+        return content;
+    }
+
+    /**
+     * Get names of the resource and its overrides found in the jar, see {@link #probeDirectory(Path, String)}
+     */
+    private static List<String> probeJar(JarFile jarFile, String baseName) {
+        List<String> names = new ArrayList<>();
+        String name = baseName;
+        if (isFile(jarFile.getJarEntry(name))) {
+            names.add(name);
+        }
+        while (isFile(jarFile.getJarEntry(name = OVERRIDE_SIGN + name))) {
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static boolean isFile(JarEntry entry) {
+        return entry != null && !entry.isDirectory();
+    }
+
+    /**
+     * Get classpath of the class loader and all its parents up to the platform class loader, parents first
+     *
+     * @param classLoader class loader
+     * @return list of classpath entries or null if any class loader of the chain could not be introspected
+     */
+    private static List<URL> getClasspath(ClassLoader classLoader) {
+        Deque<ClassLoader> chain = new ArrayDeque<>();
+        ClassLoader platformClassLoader = ClassLoader.getPlatformClassLoader();
+        // platform and bootstrap class loaders contain only jdk modules
+        for (ClassLoader loader = classLoader; loader != null && loader != platformClassLoader; loader = loader.getParent()) {
+            chain.addFirst(loader);
+        }
+        List<URL> classpath = new ArrayList<>();
+        for (ClassLoader loader : chain) {
+            List<URL> loaderClasspath = getOwnClasspath(loader);
+            if (loaderClasspath == null) {
+                return null;
+            }
+            classpath.addAll(loaderClasspath);
+        }
+        return classpath;
+    }
+
+    private static List<URL> getOwnClasspath(ClassLoader classLoader) {
+        if (classLoader instanceof URLClassLoader) {
+            return Arrays.asList(((URLClassLoader) classLoader).getURLs());
+        }
+        if (classLoader != ClassLoader.getSystemClassLoader()
+                || !"jdk.internal.loader.ClassLoaders$AppClassLoader".equals(classLoader.getClass().getName())) {
+            return null;
+        }
+        Map<URL, Boolean> classpath = new LinkedHashMap<>();
+        for (String path : StringUtils.split(System.getProperty("java.class.path", ""), File.pathSeparator)) {
+            try {
+                classpath.put(new File(path).toURI().toURL(), Boolean.TRUE);
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+        return new ArrayList<>(classpath.keySet());
+    }
+
+    private static final class JarContent {
+        private final long lastModified;
+        private final long length;
+        // relative urls from the Class-Path manifest attribute
+        private final List<String> classpath;
+        // base name -> names of the resource and its overrides found in the jar
+        private final Map<String, List<String>> names;
+
+        private JarContent(long lastModified, long length, List<String> classpath, Map<String, List<String>> names) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.classpath = classpath;
+            this.names = names;
+        }
+    }
+}
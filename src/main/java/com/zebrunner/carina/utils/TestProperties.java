@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Temporary properties of the current test (thread).<br>
+ * Besides the properties, keeps per-key {@link Entry} used by {@link R} on reads, so repeated reads of the overridden key
+ * take a single lookup without any extra bookkeeping. Entries are kept in sync on any modification of the properties.
+ */
+final class TestProperties extends Properties {
+    private static final long serialVersionUID = 3960431717012874592L;
+
+    private final transient Map<Object, Entry> entries = new ConcurrentHashMap<>();
+    // string properties sorted by key, used for prefix lookups
+    private final transient ConcurrentSkipListMap<String, String> sortedProperties = new ConcurrentSkipListMap<>();
+    // incremented on every modification
+    private transient volatile int modCount;
+    // last version of the properties and global version / modification count it was assigned for, see getVersion(long, AtomicLong)
+    private transient long version;
+    private transient long versionGlobal = -1;
+    private transient int versionModCount = -1;
+
+    /**
+     * Get state of the overridden property
+     *
+     * @param key property key
+     * @return {@link Entry} or null if property is not overridden for current test
+     */
+    Entry getEntry(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Get version of the global properties overridden by these properties
+     *
+     * @param globalVersion current version of the global properties
+     * @param versions source of the unique versions
+     * @return version that is changed when global version is changed or these properties are modified
+     */
+    synchronized long getVersion(long globalVersion, AtomicLong versions) {
+        int currentModCount = modCount;
+        if (versionGlobal != globalVersion || versionModCount != currentModCount) {
+            version = versions.incrementAndGet();
+            versionGlobal = globalVersion;
+            versionModCount = currentModCount;
+        }
+        return version;
+    }
+
+    /**
+     * Get string properties whose keys start with the prefix
+     *
+     * @param prefix key prefix
+     * @return sorted view of the properties
+     */
+    SortedMap<String, String> getByPrefix(String prefix) {
+        return PropertiesSnapshot.subMap(sortedProperties, prefix);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        Object previous = super.put(key, value);
+        sync(key);
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> t) {
+        t.forEach(this::put);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Object previous = super.remove(key);
+        forget(key);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        boolean isRemoved = super.remove(key, value);
+        sync(key);
+        return isRemoved;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        entries.clear();
+        sortedProperties.clear();
+        modCount++;
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        Object previous = super.putIfAbsent(key, value);
+        sync(key);
+        return previous;
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        boolean isReplaced = super.replace(key, oldValue, newValue);
+        sync(key);
+        return isReplaced;
+    }
+
+    @Override
+    public Object replace(Object key, Object value) {
+        Object previous = super.replace(key, value);
+        sync(key);
+        return previous;
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        super.replaceAll(function);
+        super.keySet().forEach(this::sync);
+    }
+
+    @Override
+    public Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+        Object value = super.computeIfAbsent(key, mappingFunction);
+        sync(key);
+        return value;
+    }
+
+    @Override
+    public Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        Object value = super.computeIfPresent(key, remappingFunction);
+        sync(key);
+        return value;
+    }
+
+    @Override
+    public Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        Object value = super.compute(key, remappingFunction);
+        sync(key);
+        return value;
+    }
+
+    @Override
+    public Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        Object merged = super.merge(key, value, remappingFunction);
+        sync(key);
+        return merged;
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        Set<Object> keys = super.keySet();
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return new SyncIterator<>(keys.iterator(), key -> key);
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return keys.contains(key);
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Object> values() {
+        Set<Map.Entry<Object, Object>> propertiesEntries = super.entrySet();
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Object> iterator() {
+                Iterator<Map.Entry<Object, Object>> iterator = new SyncIterator<>(propertiesEntries.iterator(), Map.Entry::getKey);
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return iterator.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return propertiesEntries.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        Set<Map.Entry<Object, Object>> propertiesEntries = super.entrySet();
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Object, Object>> iterator() {
+                Iterator<Map.Entry<Object, Object>> iterator = new SyncIterator<>(propertiesEntries.iterator(), Map.Entry::getKey);
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<Object, Object> next() {
+                        Map.Entry<Object, Object> entry = iterator.next();
+                        return new AbstractMap.SimpleEntry<>(entry) {
+                            private static final long serialVersionUID = 1L;
+
+                            @Override
+                            public Object setValue(Object value) {
+                                super.setValue(value);
+                                return put(getKey(), value);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return propertiesEntries.contains(o);
+            }
+
+            @Override
+            public int size() {
+                return propertiesEntries.size();
+            }
+        };
+    }
+
+    /**
+     * Updates entry of the key according to the current value of the property
+     */
+    private void sync(Object key) {
+        Object value = super.get(key);
+        if (value == null) {
+            forget(key);
+            return;
+        }
+        modCount++;
+        if (key instanceof String) {
+            if (value instanceof String) {
+                sortedProperties.put((String) key, (String) value);
+            } else {
+                sortedProperties.remove(key);
+            }
+        }
+        Entry entry = entries.get(key);
+        // entry (and its state) is kept if the value is not changed
+        if (entry == null || !Objects.equals(entry.getValue(), value)) {
+            entries.put(key, new Entry(value instanceof String ? (String) value : null));
+        }
+    }
+
+    /**
+     * Removes state of the removed property
+     */
+    private void forget(Object key) {
+        entries.remove(key);
+        if (key instanceof String) {
+            sortedProperties.remove(key);
+        }
+        modCount++;
+    }
+
+    /**
+     * Iterator that keeps entries in sync on removal
+     */
+    private final class SyncIterator<T> implements Iterator<T> {
+        private final Iterator<T> iterator;
+        private final Function<T, Object> keyExtractor;
+        private T current;
+
+        private SyncIterator(Iterator<T> iterator, Function<T, Object> keyExtractor) {
+            this.iterator = iterator;
+            this.keyExtractor = keyExtractor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            current = iterator.next();
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            iterator.remove();
+            forget(keyExtractor.apply(current));
+        }
+    }
+
+    /**
+     * State of the overridden property
+     */
+    static final class Entry {
+        // null if value is not a string
+        private final TypedValue value;
+        // true if user was notified that overridden value is used
+        private volatile boolean notified;
+
+        private Entry(String value) {
+            this.value = value != null ? new TypedValue(value) : null;
+        }
+
+        String getValue() {
+            return value != null ? value.getValue() : null;
+        }
+
+        /**
+         * @return value with memoized primitive representations or null if value is not a string
+         */
+        TypedValue getTypedValue() {
+            return value;
+        }
+
+        boolean isNotified() {
+            return notified;
+        }
+
+        void setNotified() {
+            this.notified = true;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+/**
+ * Property value with memoized primitive representations.<br>
+ * Value is parsed only on the first call of the typed getter, all next calls return the parsed primitive.
+ * If value could not be parsed, nothing is memoized, so the same exception is thrown on every call.
+ */
+final class TypedValue {
+    private final String value;
+    // parsing of the boolean never fails and is cheap, so it is done in advance
+    private final boolean booleanValue;
+
+    private int intValue;
+    private volatile boolean isIntParsed;
+    private long longValue;
+    private volatile boolean isLongParsed;
+    private double doubleValue;
+    private volatile boolean isDoubleParsed;
+
+    TypedValue(String value) {
+        this.value = value;
+        this.booleanValue = Boolean.parseBoolean(value);
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    /**
+     * @throws NumberFormatException if value is not an int
+     */
+    int getInt() {
+        if (!isIntParsed) {
+            intValue = Integer.parseInt(value);
+            isIntParsed = true;
+        }
+        return intValue;
+    }
+
+    /**
+     * @throws NumberFormatException if value is not a long
+     */
+    long getLong() {
+        if (!isLongParsed) {
+            longValue = Long.parseLong(value);
+            isLongParsed = true;
+        }
+        return longValue;
+    }
+
+    /**
+     * @throws NumberFormatException if value is not a double
+     */
+    double getDouble() {
+        if (!isDoubleParsed) {
+            doubleValue = Double.parseDouble(value);
+            isDoubleParsed = true;
+        }
+        return doubleValue;
+    }
+
+    boolean getBoolean() {
+        return booleanValue;
+    }
+}
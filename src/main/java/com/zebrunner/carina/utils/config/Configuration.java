@@ -1,13 +1,16 @@
 package com.zebrunner.carina.utils.config;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import com.zebrunner.carina.utils.ConfigurationMetrics;
+import com.zebrunner.carina.utils.IPropertyChangeListener;
+import com.zebrunner.carina.utils.PropertyChangeSubscription;
 import com.zebrunner.carina.utils.R;
 import com.zebrunner.carina.utils.encryptor.EncryptorUtils;
 import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
@@ -20,6 +23,7 @@ public class Configuration {
     private static final String REQUIRE_VALUE_ERROR_MESSAGE = "Getting the value of parameter '%s' as required failed: the value is missing.";
 
     private static final MutableObject<IEnvArgResolver> ENV_ARG_RESOLVER = new MutableObject<>(new DefaultEnvArgResolver());
+    private static final EnvArgResolverCache ENV_ARG_CACHE = new EnvArgResolverCache();
 
     public enum Parameter implements IParameter {
 
@@ -47,15 +51,22 @@ public class Configuration {
         }
     }
 
-    private static final ConfigurationOption[] DEFAULT_CONFIG_OPTIONS = Set.of(StandardConfigurationOption.ENVIRONMENT,
-            StandardConfigurationOption.GLOBAL)
-            .toArray(new ConfigurationOption[0]);
+    // converter -> parameter -> raw value -> converted value, so conversion is done once per raw value. Several raw values
+    // are kept per parameter, so threads with different test properties do not evict each other's values
+    private static final Map<IValueConverter<?>, Map<String, Map<String, Object>>> CONVERTED_VALUES = new ConcurrentHashMap<>();
+    private static final int MAX_CONVERTED_VALUES = 64;
+
+    private static final ConfigurationOptions DEFAULT_CONFIG_OPTIONS = ConfigurationOptions.DEFAULT;
 
     public static Optional<String> get(IParameter parameter) {
-        return get(parameter, DEFAULT_CONFIG_OPTIONS);
+        return get(parameter.getKey(), DEFAULT_CONFIG_OPTIONS);
     }
 
     public static Optional<String> get(IParameter parameter, ConfigurationOption... options) {
+        return get(parameter.getKey(), ConfigurationOptions.of(options));
+    }
+
+    public static Optional<String> get(IParameter parameter, ConfigurationOptions options) {
         return get(parameter.getKey(), options);
     }
 
@@ -63,27 +74,31 @@ public class Configuration {
         return get(parameter, DEFAULT_CONFIG_OPTIONS);
     }
 
+    public static Optional<String> get(String parameter, ConfigurationOption... options) {
+        return get(parameter, ConfigurationOptions.of(options));
+    }
+
     /**
      * Get configuration value
      *
      * @param parameter parameter key.
+     * @param options configuration options. If neither {@link StandardConfigurationOption#GLOBAL} nor
+     *            {@link StandardConfigurationOption#ENVIRONMENT} is specified, both are used
      * @return the {@link Optional} of parameter value if it is found by key, or {@link Optional#empty()} if not
      */
-    public static Optional<String> get(String parameter, ConfigurationOption... options) {
+    public static Optional<String> get(String parameter, ConfigurationOptions options) {
+        ConfigurationMetrics.onParameterRead(parameter);
         String value = null;
+        boolean isLocationSpecified = options.containsAny(ConfigurationOptions.GLOBAL | ConfigurationOptions.ENVIRONMENT);
 
-        if (!ArrayUtils.contains(options, StandardConfigurationOption.GLOBAL)
-                && !ArrayUtils.contains(options, StandardConfigurationOption.ENVIRONMENT)) {
-            options = ArrayUtils.addAll(options, DEFAULT_CONFIG_OPTIONS);
-        }
-        if (ArrayUtils.contains(options, StandardConfigurationOption.GLOBAL)) {
+        if (!isLocationSpecified || options.containsAll(ConfigurationOptions.GLOBAL)) {
             Optional<String> globalValue = getGlobalParameter(parameter);
             if (globalValue.isPresent()) {
                 value = globalValue.get();
             }
         }
 
-        if (ArrayUtils.contains(options, StandardConfigurationOption.ENVIRONMENT) && !(Parameter.ENV.getKey().equals(parameter))) {
+        if ((!isLocationSpecified || options.containsAll(ConfigurationOptions.ENVIRONMENT)) && !(Parameter.ENV.getKey().equals(parameter))) {
             Optional<String> envValue = getEnvironmentParameter(parameter);
             if (envValue.isPresent()) {
                 value = envValue.get();
@@ -94,7 +109,7 @@ public class Configuration {
             return Optional.empty();
         }
 
-        if (ArrayUtils.contains(options, StandardConfigurationOption.DECRYPT)) {
+        if (options.containsAll(ConfigurationOptions.DECRYPT)) {
             value = EncryptorUtils.decrypt(value);
         }
         return Optional.of(value);
@@ -109,12 +124,8 @@ public class Configuration {
     }
 
     protected static Optional<String> getEnvironmentParameter(String parameter) {
-        String environment = R.CONFIG.get(Parameter.ENV.getKey());
-        if (environment == null || "NULL".equalsIgnoreCase(environment) || environment.isEmpty()) {
-            return Optional.empty();
-        }
-
-        String value = ENV_ARG_RESOLVER.getValue().get(environment, parameter);
+        // environment and its parameters are cached until configuration is changed
+        String value = ENV_ARG_CACHE.get(getEnvArgResolver(), parameter);
         if (value == null || "NULL".equalsIgnoreCase(value) || value.isEmpty()) {
             return Optional.empty();
         }
@@ -126,6 +137,10 @@ public class Configuration {
     }
 
     public static <T> Optional<T> get(IParameter parameter, Class<T> clazz, ConfigurationOption... options) {
+        return get(parameter.getKey(), clazz, ConfigurationOptions.of(options));
+    }
+
+    public static <T> Optional<T> get(IParameter parameter, Class<T> clazz, ConfigurationOptions options) {
         return get(parameter.getKey(), clazz, options);
     }
 
@@ -134,31 +149,108 @@ public class Configuration {
     }
 
     public static <T> Optional<T> get(String parameter, Class<T> clazz, ConfigurationOption... options) {
+        return get(parameter, clazz, ConfigurationOptions.of(options));
+    }
+
+    public static <T> Optional<T> get(String parameter, Class<T> clazz, ConfigurationOptions options) {
         Optional<String> optionalValue = get(parameter, options);
         if (optionalValue.isEmpty()) {
             return Optional.empty();
         }
-        String stringValue = optionalValue.get().trim();
-        Object value;
-        if (clazz == String.class) {
-            value = stringValue;
-        } else if (clazz == Integer.class) {
-            value = Integer.valueOf(stringValue);
-        } else if (clazz == Long.class) {
-            value = Long.valueOf(stringValue);
-        } else if (clazz == Double.class) {
-            value = Double.valueOf(stringValue);
-        } else if (clazz == Boolean.class) {
-            value = Boolean.valueOf(stringValue);
-        } else if (clazz == Short.class) {
-            value = Short.valueOf(stringValue);
-        } else if (clazz == Byte.class) {
-            value = Byte.valueOf(stringValue);
-        } else {
-            throw new IllegalArgumentException(
-                    String.format("Cannot get parameter value with specific type. Class '%s' is unsupported by method.", clazz));
+        IValueConverter<T> converter = ValueConverters.get(clazz);
+        String value = optionalValue.get().trim();
+        if (options.containsAll(ConfigurationOptions.DECRYPT)) {
+            // decrypted values are not kept in memory
+            return Optional.of(converter.convert(value));
+        }
+        Map<String, Object> convertedValues = CONVERTED_VALUES.computeIfAbsent(converter, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(parameter, k -> new ConcurrentHashMap<>());
+        Object convertedValue = convertedValues.get(value);
+        if (convertedValue == null) {
+            convertedValue = converter.convert(value);
+            if (convertedValues.size() >= MAX_CONVERTED_VALUES) {
+                // outdated values are rarely requested again
+                convertedValues.clear();
+            }
+            convertedValues.put(value, convertedValue);
         }
-        return Optional.of(clazz.cast(value));
+        return Optional.of(clazz.cast(convertedValue));
+    }
+
+    /**
+     * Get reusable handle of the parameter. Options and converter are computed once, and the value is
+     * read from the configuration only when configuration is changed, see {@link ParameterHandle}
+     *
+     * @param parameter parameter
+     * @param clazz type of the value, for example {@link Integer}
+     * @return {@link ParameterHandle}
+     * @throws IllegalArgumentException if type is not supported
+     */
+    public static <T> ParameterHandle<T> handle(IParameter parameter, Class<T> clazz) {
+        return handle(parameter, clazz, DEFAULT_CONFIG_OPTIONS);
+    }
+
+    /**
+     * Get reusable handle of the parameter. Options and converter are computed once, and the value is
+     * read from the configuration only when configuration is changed, see {@link ParameterHandle}
+     *
+     * @param parameter parameter
+     * @param clazz type of the value, for example {@link Integer}
+     * @param options configuration options
+     * @return {@link ParameterHandle}
+     * @throws IllegalArgumentException if type is not supported
+     */
+    public static <T> ParameterHandle<T> handle(IParameter parameter, Class<T> clazz, ConfigurationOption... options) {
+        return handle(parameter, clazz, ConfigurationOptions.of(options));
+    }
+
+    /**
+     * Get reusable handle of the parameter. Options and converter are computed once, and the value is
+     * read from the configuration only when configuration is changed, see {@link ParameterHandle}
+     *
+     * @param parameter parameter
+     * @param clazz type of the value, for example {@link Integer}
+     * @param options configuration options
+     * @return {@link ParameterHandle}
+     * @throws IllegalArgumentException if type is not supported
+     */
+    public static <T> ParameterHandle<T> handle(IParameter parameter, Class<T> clazz, ConfigurationOptions options) {
+        return new ParameterHandle<>(parameter, ValueConverters.get(clazz), options);
+    }
+
+    /**
+     * Creates object that implements the interface by returning values of the configuration parameters: each abstract method
+     * should be annotated by {@link ConfigurationProperty}. All values are read, converted and validated at once,
+     * and are re-read together only when configuration is changed.
+     *
+     * @param type interface
+     * @return bound object
+     * @throws IllegalArgumentException if type is not an interface or its method could not be bound
+     * @throws InvalidConfigurationException if any required value is missing or any value could not be converted
+     */
+    public static <T> T bind(Class<T> type) {
+        return ConfigurationBinding.bind(type);
+    }
+
+    /**
+     * Adds listener of the global changes of the properties that define the parameter value: the parameter itself,
+     * environment ({@link Parameter#ENV}) and parameter of the current environment ({@code <env>.<parameter>}).
+     * Parameters of the other environments are not listened
+     *
+     * @param parameter parameter
+     * @param listener {@link IPropertyChangeListener}
+     * @return {@link PropertyChangeSubscription} that could be used to remove listener
+     */
+    public static PropertyChangeSubscription addListener(IParameter parameter, IPropertyChangeListener listener) {
+        String key = parameter.getKey();
+        String envKeySuffix = "." + key;
+        // suffix is checked first, so environment is read only for the keys that could be environment-specific
+        return R.CONFIG.addListener(changedKey -> changedKey.equals(key) || changedKey.equals(Parameter.ENV.getKey())
+                || (changedKey.endsWith(envKeySuffix) && changedKey.equals(R.CONFIG.get(Parameter.ENV.getKey()) + envKeySuffix)), listener);
+    }
+
+    static IEnvArgResolver getEnvArgResolver() {
+        return ENV_ARG_RESOLVER.getValue();
     }
 
     public static String getRequired(IParameter parameter) {
@@ -166,6 +258,10 @@ public class Configuration {
     }
 
     public static String getRequired(IParameter parameter, ConfigurationOption... options) {
+        return getRequired(parameter, ConfigurationOptions.of(options));
+    }
+
+    public static String getRequired(IParameter parameter, ConfigurationOptions options) {
         return get(parameter, options)
                 .orElseThrow(() -> new InvalidConfigurationException(
                         String.format(REQUIRE_VALUE_ERROR_MESSAGE, parameter.getKey())));
@@ -176,6 +272,10 @@ public class Configuration {
     }
 
     public static String getRequired(String parameter, ConfigurationOption... options) {
+        return getRequired(parameter, ConfigurationOptions.of(options));
+    }
+
+    public static String getRequired(String parameter, ConfigurationOptions options) {
         return get(parameter, options)
                 .orElseThrow(() -> new InvalidConfigurationException(
                         String.format(REQUIRE_VALUE_ERROR_MESSAGE, parameter)));
@@ -186,6 +286,10 @@ public class Configuration {
     }
 
     public static <T> T getRequired(IParameter parameter, Class<T> clazz, ConfigurationOption... options) {
+        return getRequired(parameter, clazz, ConfigurationOptions.of(options));
+    }
+
+    public static <T> T getRequired(IParameter parameter, Class<T> clazz, ConfigurationOptions options) {
         return get(parameter.getKey(), clazz, options)
                 .orElseThrow(() -> new InvalidConfigurationException(
                         String.format(REQUIRE_VALUE_ERROR_MESSAGE, parameter)));
@@ -196,6 +300,10 @@ public class Configuration {
     }
 
     public static <T> T getRequired(String parameter, Class<T> clazz, ConfigurationOption... options) {
+        return getRequired(parameter, clazz, ConfigurationOptions.of(options));
+    }
+
+    public static <T> T getRequired(String parameter, Class<T> clazz, ConfigurationOptions options) {
         return get(parameter, clazz, options)
                 .orElseThrow(() -> new InvalidConfigurationException(
                         String.format(REQUIRE_VALUE_ERROR_MESSAGE, parameter)));
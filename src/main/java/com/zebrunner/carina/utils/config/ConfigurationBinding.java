@@ -0,0 +1,235 @@
+package com.zebrunner.carina.utils.config;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.lang3.ClassUtils;
+
+import com.zebrunner.carina.utils.R;
+import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
+
+/**
+ * Implementation of the interface created by {@link Configuration#bind(Class)}.<br>
+ * All the values are read and converted at once and are served from memory until the configuration visible to the current thread
+ * is changed (see {@link R#getVersion()}) or environment argument resolver is replaced, then all the values are re-read together.
+ * Values are kept per configuration version, so threads with different test properties do not evict each other's values.
+ * Properties with {@link StandardConfigurationOption#DECRYPT} option are never cached and are read on every call.
+ * Default methods of the interface are invoked as is, so they could be used to derive values from the bound properties.
+ */
+final class ConfigurationBinding implements InvocationHandler {
+    private static final String MISSING_VALUE_PROBLEM = "'%s' parameter is required, but the value is missing";
+    private static final String CONVERSION_PROBLEM = "'%s' parameter value could not be converted: %s";
+
+    private final Class<?> type;
+    private final Map<Method, Property> properties;
+    private final Map<Method, MethodHandle> defaultMethods;
+    private final VersionedCache<Values> values = new VersionedCache<>();
+
+    private ConfigurationBinding(Class<?> type, Map<Method, Property> properties, Map<Method, MethodHandle> defaultMethods) {
+        this.type = type;
+        this.properties = properties;
+        this.defaultMethods = defaultMethods;
+    }
+
+    /**
+     * Creates bound object. All values are read and validated immediately
+     *
+     * @param type interface whose abstract methods are annotated by {@link ConfigurationProperty}
+     * @return bound object
+     * @throws IllegalArgumentException if type is not an interface or its method could not be bound
+     * @throws InvalidConfigurationException if any required value is missing or any value could not be converted
+     */
+    static <T> T bind(Class<T> type) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException(String.format("Unable to bind configuration to '%s': only interfaces are supported.", type));
+        }
+        Map<Method, Property> properties = new LinkedHashMap<>();
+        Map<Method, MethodHandle> defaultMethods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (method.isDefault()) {
+                defaultMethods.put(method, getDefaultMethodHandle(type, method));
+                continue;
+            }
+            if (!Modifier.isAbstract(method.getModifiers())) {
+                continue;
+            }
+            ConfigurationProperty annotation = method.getAnnotation(ConfigurationProperty.class);
+            if (annotation == null || method.getParameterCount() != 0) {
+                throw new IllegalArgumentException(String.format("Unable to bind configuration to '%s' method: it should have no parameters"
+                        + " and should be annotated by @%s.", method, ConfigurationProperty.class.getSimpleName()));
+            }
+            properties.put(method, new Property(method, annotation));
+        }
+        ConfigurationBinding binding = new ConfigurationBinding(type, properties, defaultMethods);
+        binding.getValues();
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, binding));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return toString();
+            }
+        }
+        MethodHandle defaultMethod = defaultMethods.get(method);
+        if (defaultMethod != null) {
+            return defaultMethod.bindTo(proxy).invokeWithArguments(args == null ? new Object[0] : args);
+        }
+        Property property = properties.get(method);
+        if (property.isDecrypted) {
+            return readDecrypted(property);
+        }
+        return getValues().values.get(method);
+    }
+
+    /**
+     * Get handle that invokes the default method of the interface bypassing the proxy
+     */
+    private static MethodHandle getDefaultMethodHandle(Class<?> type, Method method) {
+        try {
+            return MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup())
+                    .unreflectSpecial(method, method.getDeclaringClass());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(String.format("Unable to bind configuration to '%s': default method '%s' is not accessible.",
+                    type, method), e);
+        }
+    }
+
+    private Values getValues() {
+        // version should be read before the values
+        long version = R.getVersion();
+        IEnvArgResolver envArgResolver = Configuration.getEnvArgResolver();
+        Values current = values.get(version);
+        if (current == null || current.envArgResolver != envArgResolver) {
+            current = new Values(envArgResolver, read());
+            values.put(version, current);
+        }
+        return current;
+    }
+
+    /**
+     * Reads and validates all the values. Decrypted values are validated, but are not returned, so they are not cached
+     */
+    private Map<Method, Object> read() {
+        Map<Method, Object> read = new HashMap<>();
+        List<String> problems = new ArrayList<>();
+        properties.forEach((method, property) -> {
+            try {
+                Optional<?> value = Configuration.get(property.key, property.valueType, property.options);
+                if (property.isOptional) {
+                    read.put(method, value);
+                } else if (value.isPresent()) {
+                    read.put(method, value.get());
+                } else {
+                    problems.add(String.format(MISSING_VALUE_PROBLEM, property.key));
+                }
+            } catch (IllegalArgumentException e) {
+                problems.add(String.format(CONVERSION_PROBLEM, property.key, e.getMessage()));
+            }
+            if (property.isDecrypted) {
+                read.remove(method);
+            }
+        });
+        if (!problems.isEmpty()) {
+            throw new InvalidConfigurationException(String.format("Invalid configuration of '%s':%n%s", type.getName(),
+                    String.join(System.lineSeparator(), problems)));
+        }
+        return read;
+    }
+
+    private Object readDecrypted(Property property) {
+        String problem;
+        try {
+            Optional<?> value = Configuration.get(property.key, property.valueType, property.options);
+            if (property.isOptional) {
+                return value;
+            }
+            if (value.isPresent()) {
+                return value.get();
+            }
+            problem = String.format(MISSING_VALUE_PROBLEM, property.key);
+        } catch (IllegalArgumentException e) {
+            problem = String.format(CONVERSION_PROBLEM, property.key, e.getMessage());
+        }
+        throw new InvalidConfigurationException(String.format("Invalid configuration of '%s':%n%s", type.getName(), problem));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder asString = new StringBuilder(type.getSimpleName()).append('{');
+        Map<Method, Object> current = getValues().values;
+        String separator = "";
+        for (Map.Entry<Method, Property> entry : properties.entrySet()) {
+            asString.append(separator)
+                    .append(entry.getValue().key)
+                    .append('=')
+                    .append(entry.getValue().isHidden ? "*****"
+                            : entry.getValue().isDecrypted ? readDecrypted(entry.getValue()) : current.get(entry.getKey()));
+            separator = ", ";
+        }
+        return asString.append('}').toString();
+    }
+
+    private static final class Property {
+        private final String key;
+        private final ConfigurationOptions options;
+        private final boolean isOptional;
+        private final boolean isHidden;
+        private final boolean isDecrypted;
+        private final Class<?> valueType;
+
+        private Property(Method method, ConfigurationProperty annotation) {
+            this.key = annotation.value();
+            this.options = ConfigurationOptions.of(annotation.options());
+            this.isHidden = annotation.hidden();
+            this.isDecrypted = options.containsAll(ConfigurationOptions.DECRYPT);
+            this.isOptional = method.getReturnType() == Optional.class;
+            this.valueType = isOptional ? getOptionalType(method) : ClassUtils.primitiveToWrapper(method.getReturnType());
+            // fails fast if there are no converter
+            ValueConverters.get(valueType);
+        }
+
+        private static Class<?> getOptionalType(Method method) {
+            Type returnType = method.getGenericReturnType();
+            if (returnType instanceof ParameterizedType) {
+                Type valueType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+                if (valueType instanceof Class) {
+                    return (Class<?>) valueType;
+                }
+                if (valueType instanceof ParameterizedType) {
+                    return (Class<?>) ((ParameterizedType) valueType).getRawType();
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unable to bind configuration to '%s' method: type of the Optional is unknown.",
+                    method));
+        }
+    }
+
+    private static final class Values {
+        private final IEnvArgResolver envArgResolver;
+        private final Map<Method, Object> values;
+
+        private Values(IEnvArgResolver envArgResolver, Map<Method, Object> values) {
+            this.envArgResolver = envArgResolver;
+            this.values = values;
+        }
+    }
+}
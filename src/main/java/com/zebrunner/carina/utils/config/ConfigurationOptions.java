@@ -0,0 +1,146 @@
+package com.zebrunner.carina.utils.config;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable set of the {@link ConfigurationOption}s represented by a bitmask.<br>
+ * {@link StandardConfigurationOption}s occupy the first bits, custom options are assigned to the next bits
+ * on registration (explicit by {@link #register(ConfigurationOption)} or implicit on the first usage in {@link #of(ConfigurationOption...)}).
+ * Up to 64 options could be registered. Sets are intended to be created once and stored in constants.
+ */
+public final class ConfigurationOptions {
+    private static final int MAX_OPTIONS = Long.SIZE;
+    // option -> bit position
+    private static final Map<ConfigurationOption, Integer> POSITIONS = new ConcurrentHashMap<>();
+
+    static {
+        for (StandardConfigurationOption option : StandardConfigurationOption.values()) {
+            register(option);
+        }
+    }
+
+    static final long GLOBAL = bit(StandardConfigurationOption.GLOBAL);
+    static final long ENVIRONMENT = bit(StandardConfigurationOption.ENVIRONMENT);
+    static final long DECRYPT = bit(StandardConfigurationOption.DECRYPT);
+
+    /**
+     * Empty set. Parameter is searched both globally and for environment, as if {@link #DEFAULT} options are used
+     */
+    public static final ConfigurationOptions NONE = new ConfigurationOptions(0);
+
+    /**
+     * Options used when no options are specified: {@link StandardConfigurationOption#ENVIRONMENT} and {@link StandardConfigurationOption#GLOBAL}
+     */
+    public static final ConfigurationOptions DEFAULT = new ConfigurationOptions(ENVIRONMENT | GLOBAL);
+
+    private final long bits;
+
+    private ConfigurationOptions(long bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Registers custom option. Registration of the already registered option has no effect
+     *
+     * @param option {@link ConfigurationOption}
+     * @return bit position of the option
+     * @throws IllegalStateException if there are no free bit positions
+     */
+    public static int register(ConfigurationOption option) {
+        // options are registered once, so lock is taken only for the new option
+        Integer position = POSITIONS.get(Objects.requireNonNull(option));
+        return position != null ? position : registerNew(option);
+    }
+
+    private static synchronized int registerNew(ConfigurationOption option) {
+        Integer position = POSITIONS.get(option);
+        if (position == null) {
+            if (POSITIONS.size() >= MAX_OPTIONS) {
+                throw new IllegalStateException(String.format("Unable to register '%s' option: only %d options are supported.", option, MAX_OPTIONS));
+            }
+            position = POSITIONS.size();
+            POSITIONS.put(option, position);
+        }
+        return position;
+    }
+
+    /**
+     * Creates set of the options. Custom options are registered if needed
+     *
+     * @param options options
+     * @return {@link ConfigurationOptions}
+     */
+    public static ConfigurationOptions of(ConfigurationOption... options) {
+        long bits = 0;
+        for (ConfigurationOption option : options) {
+            bits |= 1L << register(option);
+        }
+        return new ConfigurationOptions(bits);
+    }
+
+    /**
+     * Creates new set that contains options of this set and specified options
+     *
+     * @param options options
+     * @return {@link ConfigurationOptions}
+     */
+    public ConfigurationOptions with(ConfigurationOption... options) {
+        return new ConfigurationOptions(bits | of(options).bits);
+    }
+
+    public boolean contains(ConfigurationOption option) {
+        Integer position = POSITIONS.get(option);
+        return position != null && (bits & (1L << position)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    /**
+     * Check if all the options of the mask are in the set
+     */
+    boolean containsAll(long mask) {
+        return (bits & mask) == mask;
+    }
+
+    /**
+     * Check if any of the options of the mask is in the set
+     */
+    boolean containsAny(long mask) {
+        return (bits & mask) != 0;
+    }
+
+    private static long bit(ConfigurationOption option) {
+        return 1L << POSITIONS.get(option);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof ConfigurationOptions && bits == ((ConfigurationOptions) o).bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits);
+    }
+
+    @Override
+    public String toString() {
+        // options are listed in the order of their bit positions
+        String[] names = new String[MAX_OPTIONS];
+        POSITIONS.forEach((option, position) -> {
+            if ((bits & (1L << position)) != 0) {
+                names[position] = option.toString();
+            }
+        });
+        return Arrays.stream(names)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList())
+                .toString();
+    }
+}
@@ -0,0 +1,32 @@
+package com.zebrunner.carina.utils.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds method of the interface to the configuration parameter, see {@link Configuration#bind(Class)}.<br>
+ * If method returns {@link java.util.Optional}, parameter is optional, otherwise parameter is required.
+ * Value is converted to the return type (or the type of the {@link java.util.Optional}) by {@link ValueConverters}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ConfigurationProperty {
+
+    /**
+     * @return parameter key
+     */
+    String value();
+
+    /**
+     * @return configuration options. If neither {@link StandardConfigurationOption#GLOBAL} nor
+     *         {@link StandardConfigurationOption#ENVIRONMENT} is specified, both are used
+     */
+    StandardConfigurationOption[] options() default {};
+
+    /**
+     * @return true if value should be masked in {@link Object#toString()} of the bound object
+     */
+    boolean hidden() default false;
+}
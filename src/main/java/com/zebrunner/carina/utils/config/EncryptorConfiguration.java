@@ -13,6 +13,22 @@ public class EncryptorConfiguration extends Configuration {
             }
         },
 
+        /**
+         * Additional keys in the format {@code <id>:<key>,<id>:<key>}. Data encrypted by the key of the ring is prefixed by the key id,
+         * for example {@code {crypt:v2:8O9iA4+f3nMzz85szmvKmQ==}}, so values encrypted by the old and new keys could be decrypted during the key rotation
+         */
+        CRYPTO_KEY_RING("crypto_key_ring") {
+            @Override
+            public boolean hidden() {
+                return true;
+            }
+        },
+
+        /**
+         * Id of the key of the {@link #CRYPTO_KEY_RING} used for encryption. If not specified, {@link #CRYPTO_KEY_VALUE} is used
+         */
+        CRYPTO_KEY_ID("crypto_key_id"),
+
         CRYPTO_PATTERN("crypto_pattern"),
 
         CRYPTO_WRAPPER("crypto_wrapper"),
@@ -22,7 +38,28 @@ public class EncryptorConfiguration extends Configuration {
             public boolean hidden() {
                 return true;
             }
-        };
+        },
+
+        /**
+         * Maximum number of the decrypted values cached by {@link com.zebrunner.carina.utils.encryptor.EncryptorUtils}, 0 disables the cache
+         */
+        CRYPTO_CACHE_SIZE("crypto_cache_size"),
+
+        /**
+         * Time-to-live of the decrypted value in the cache, for example {@code 10m} or {@code PT10M}
+         */
+        CRYPTO_CACHE_TTL("crypto_cache_ttl"),
+
+        /**
+         * Strategy of the cipher instances reuse: {@code thread_local} (default) or {@code pool},
+         * see {@link com.zebrunner.carina.utils.encryptor.CipherStrategy}
+         */
+        CRYPTO_CIPHER_STRATEGY("crypto_cipher_strategy"),
+
+        /**
+         * Maximum number of the ciphers kept by the pool per mode (encrypt/decrypt), twice the number of processors by default
+         */
+        CRYPTO_CIPHER_POOL_SIZE("crypto_cipher_pool_size");
 
         private final String name;
 
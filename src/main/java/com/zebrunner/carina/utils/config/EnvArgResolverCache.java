@@ -0,0 +1,64 @@
+package com.zebrunner.carina.utils.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.zebrunner.carina.utils.R;
+
+/**
+ * Cache of the environment parameters resolved by {@link IEnvArgResolver}.<br>
+ * Cached values are keyed by (env, key) and are kept per configuration version (see {@link R#getVersion()}), so threads with
+ * different test properties (for example, different environments) do not evict each other's values. Values of the version are
+ * dropped when the resolver is replaced. When the cache is filled for the environment, parameters returned by
+ * {@link IEnvArgResolver#getAll(String)} are prefetched.
+ */
+final class EnvArgResolverCache {
+    private final VersionedCache<State> states = new VersionedCache<>();
+
+    /**
+     * Get environment parameter value
+     *
+     * @param resolver current environment argument resolver
+     * @param parameter parameter key
+     * @return value or null if there are no environment or parameter value is empty
+     */
+    String get(IEnvArgResolver resolver, String parameter) {
+        // version should be read before the configuration
+        long version = R.getVersion();
+        State current = states.get(version);
+        if (current == null || current.resolver != resolver) {
+            current = new State(resolver, R.CONFIG.get(Configuration.Parameter.ENV.getKey()));
+            states.put(version, current);
+        }
+        return current.get(parameter);
+    }
+
+    private static final class State {
+        // value used for missing parameters, as ConcurrentHashMap does not support null values
+        private static final String MISSING = "";
+
+        private final IEnvArgResolver resolver;
+        // null if environment is not specified
+        private final String env;
+        private final Map<String, String> values = new ConcurrentHashMap<>();
+
+        private State(IEnvArgResolver resolver, String env) {
+            this.resolver = resolver;
+            this.env = env == null || "NULL".equalsIgnoreCase(env) || env.isEmpty() ? null : env;
+            if (this.env != null) {
+                resolver.getAll(this.env).forEach((key, value) -> values.put(key, value == null ? MISSING : value));
+            }
+        }
+
+        private String get(String parameter) {
+            if (env == null) {
+                return null;
+            }
+            String value = values.computeIfAbsent(parameter, key -> {
+                String resolved = resolver.get(env, key);
+                return resolved == null ? MISSING : resolved;
+            });
+            return value.isEmpty() ? null : value;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.zebrunner.carina.utils.config;
 
+import java.util.Map;
+
 import com.zebrunner.carina.utils.R;
 
 public interface IEnvArgResolver {
@@ -7,4 +9,17 @@ public interface IEnvArgResolver {
     default String get(String env, String key) {
         return R.CONFIG.get(env + "." + key);
     }
+
+    /**
+     * Get parameters of the environment in one call, so they could be prefetched.<br>
+     * Values of the returned keys are used instead of {@link #get(String, String)} calls until configuration is changed,
+     * keys that are not returned are requested by {@link #get(String, String)}.
+     * Default implementation returns an empty map, so all parameters are requested one by one.
+     *
+     * @param env environment, for example {@code QA}
+     * @return parameter key (without environment prefix) - value
+     */
+    default Map<String, String> getAll(String env) {
+        return Map.of();
+    }
 }
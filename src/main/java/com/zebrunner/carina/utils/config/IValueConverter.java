@@ -0,0 +1,26 @@
+package com.zebrunner.carina.utils.config;
+
+/**
+ * Converter of the configuration parameter value to the specific type, used by {@link Configuration} typed getters.<br>
+ * Custom converters could be registered by {@link ValueConverters#register(IValueConverter)} or discovered by {@link java.util.ServiceLoader}
+ * ({@code META-INF/services/com.zebrunner.carina.utils.config.IValueConverter}).
+ * Converted values are cached and shared, so converter should return immutable values.
+ *
+ * @param <T> type of the converted value
+ */
+public interface IValueConverter<T> {
+
+    /**
+     * @return type of the converted value
+     */
+    Class<T> getType();
+
+    /**
+     * Converts value
+     *
+     * @param value trimmed parameter value, never empty
+     * @return converted value
+     * @throws IllegalArgumentException if value could not be converted
+     */
+    T convert(String value);
+}
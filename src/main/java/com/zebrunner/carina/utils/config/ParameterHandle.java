@@ -0,0 +1,82 @@
+package com.zebrunner.carina.utils.config;
+
+import java.util.Optional;
+
+import com.zebrunner.carina.utils.R;
+import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
+
+/**
+ * Reusable accessor of the configuration parameter created by {@link Configuration#handle(IParameter, Class, ConfigurationOption...)}.<br>
+ * Options and converter are computed once on creation. The converted value is cached per configuration version
+ * (see {@link R#getVersion()}), so threads with different test properties do not evict each other's values, and is read again
+ * only when the configuration visible to the current thread is changed or environment argument resolver is replaced.
+ * Decrypted values are never cached, so they are not kept in memory longer than needed.
+ * Handle is thread-safe and is intended to be stored in a static field.
+ *
+ * @param <T> type of the value
+ */
+public final class ParameterHandle<T> {
+    private static final String REQUIRE_VALUE_ERROR_MESSAGE = "Getting the value of parameter '%s' as required failed: the value is missing.";
+
+    private final IParameter parameter;
+    private final IValueConverter<T> converter;
+    private final ConfigurationOptions options;
+
+    private final VersionedCache<CachedValue<T>> cachedValues = new VersionedCache<>();
+
+    ParameterHandle(IParameter parameter, IValueConverter<T> converter, ConfigurationOptions options) {
+        this.parameter = parameter;
+        this.converter = converter;
+        this.options = options;
+    }
+
+    public IParameter getParameter() {
+        return parameter;
+    }
+
+    /**
+     * Get configuration value
+     *
+     * @return the {@link Optional} of parameter value if it is found, or {@link Optional#empty()} if not
+     */
+    public Optional<T> get() {
+        if (options.containsAll(ConfigurationOptions.DECRYPT)) {
+            return read();
+        }
+        // version should be read before the value
+        long version = R.getVersion();
+        IEnvArgResolver envArgResolver = Configuration.getEnvArgResolver();
+        CachedValue<T> current = cachedValues.get(version);
+        if (current != null && current.envArgResolver == envArgResolver) {
+            return current.value;
+        }
+        Optional<T> value = read();
+        cachedValues.put(version, new CachedValue<>(envArgResolver, value));
+        return value;
+    }
+
+    /**
+     * Get configuration value
+     *
+     * @return parameter value
+     * @throws InvalidConfigurationException if value is missing
+     */
+    public T getRequired() {
+        return get().orElseThrow(() -> new InvalidConfigurationException(String.format(REQUIRE_VALUE_ERROR_MESSAGE, parameter)));
+    }
+
+    private Optional<T> read() {
+        return Configuration.get(parameter.getKey(), options)
+                .map(stringValue -> converter.convert(stringValue.trim()));
+    }
+
+    private static final class CachedValue<T> {
+        private final IEnvArgResolver envArgResolver;
+        private final Optional<T> value;
+
+        private CachedValue(IEnvArgResolver envArgResolver, Optional<T> value) {
+            this.envArgResolver = envArgResolver;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.zebrunner.carina.utils.config;
+
+import java.lang.invoke.MethodHandles;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the {@link IValueConverter}s used by {@link Configuration} typed getters.<br>
+ * Built-in converters: {@link String}, {@link Integer}, {@link Long}, {@link Double}, {@link Boolean}, {@link Short}, {@link Byte},
+ * {@link Duration}, {@link List} (of strings), {@link Path}, {@link URI}, {@link URL} and any enum.
+ * Converters discovered by {@link ServiceLoader} override built-in ones, converters registered by {@link #register(IValueConverter)}
+ * override both.
+ */
+public final class ValueConverters {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    // 10, 10s, 500ms, 5m, 1h, 1d
+    private static final Pattern DURATION_PATTERN = Pattern.compile("^(\\d+)\\s*(ms|s|m|h|d)?$", Pattern.CASE_INSENSITIVE);
+    private static final Map<String, ChronoUnit> DURATION_UNITS = Map.of(
+            "ms", ChronoUnit.MILLIS,
+            "s", ChronoUnit.SECONDS,
+            "m", ChronoUnit.MINUTES,
+            "h", ChronoUnit.HOURS,
+            "d", ChronoUnit.DAYS);
+
+    private static final Map<Class<?>, IValueConverter<?>> CONVERTERS = new ConcurrentHashMap<>();
+
+    static {
+        register(String.class, Function.identity());
+        register(Integer.class, Integer::valueOf);
+        register(Long.class, Long::valueOf);
+        register(Double.class, Double::valueOf);
+        register(Boolean.class, Boolean::valueOf);
+        register(Short.class, Short::valueOf);
+        register(Byte.class, Byte::valueOf);
+        register(Duration.class, ValueConverters::toDuration);
+        register(List.class, ValueConverters::toList);
+        register(Path.class, Path::of);
+        register(URI.class, URI::create);
+        register(URL.class, ValueConverters::toUrl);
+        loadDiscovered();
+    }
+
+    private ValueConverters() {
+    }
+
+    /**
+     * Registers converter. Converter of the same type registered before is replaced
+     *
+     * @param converter {@link IValueConverter}
+     */
+    public static void register(IValueConverter<?> converter) {
+        CONVERTERS.put(Objects.requireNonNull(converter.getType()), converter);
+    }
+
+    /**
+     * Get converter of the type
+     *
+     * @param type type of the value
+     * @return {@link IValueConverter}
+     * @throws IllegalArgumentException if there are no converter for the type
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static <T> IValueConverter<T> get(Class<T> type) {
+        IValueConverter<?> converter = CONVERTERS.get(type);
+        if (converter == null && type.isEnum()) {
+            converter = CONVERTERS.computeIfAbsent(type, k -> create((Class) type, value -> toEnum((Class) type, value)));
+        }
+        if (converter == null) {
+            throw new IllegalArgumentException(
+                    String.format("Cannot get parameter value with specific type. Class '%s' is unsupported by method.", type));
+        }
+        return (IValueConverter<T>) converter;
+    }
+
+    /**
+     * Registers converters discovered by {@link ServiceLoader}. Broken providers are skipped
+     */
+    @SuppressWarnings("rawtypes")
+    private static void loadDiscovered() {
+        Iterator<IValueConverter> discovered = ServiceLoader.load(IValueConverter.class).iterator();
+        while (true) {
+            try {
+                if (!discovered.hasNext()) {
+                    return;
+                }
+                register(discovered.next());
+            } catch (ServiceConfigurationError e) {
+                LOGGER.warn("Unable to load value converter: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static <T> void register(Class<T> type, Function<String, T> function) {
+        register(create(type, function));
+    }
+
+    private static <T> IValueConverter<T> create(Class<T> type, Function<String, T> function) {
+        return new IValueConverter<>() {
+            @Override
+            public Class<T> getType() {
+                return type;
+            }
+
+            @Override
+            public T convert(String value) {
+                return function.apply(value);
+            }
+        };
+    }
+
+    /**
+     * Converts ISO-8601 duration ({@code PT10S}) or number with optional unit: {@code ms}, {@code s}, {@code m}, {@code h}
+     * or {@code d}. Number without unit is treated as seconds, as all carina timeouts are specified in seconds
+     */
+    private static Duration toDuration(String value) {
+        Matcher matcher = DURATION_PATTERN.matcher(value);
+        if (!matcher.matches()) {
+            return Duration.parse(value);
+        }
+        String unit = matcher.group(2) == null ? "s" : matcher.group(2).toLowerCase();
+        return Duration.of(Long.parseLong(matcher.group(1)), DURATION_UNITS.get(unit));
+    }
+
+    /**
+     * Converts comma-separated value to the immutable list of the trimmed non-empty strings
+     */
+    private static List<String> toList(String value) {
+        return Arrays.stream(StringUtils.split(value, ','))
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    private static URL toUrl(String value) {
+        try {
+            return URI.create(value).toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Converts name of the enum constant, case-insensitive
+     */
+    private static <E extends Enum<E>> E toEnum(Class<E> type, String value) {
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value)) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException(String.format("No enum constant %s.%s", type.getCanonicalName(), value));
+    }
+}
@@ -0,0 +1,58 @@
+package com.zebrunner.carina.utils.config;
+
+import com.zebrunner.carina.utils.R;
+
+/**
+ * Values cached per configuration version (see {@link R#getVersion()}).<br>
+ * Threads without test properties share the global version, while every thread with test properties has its own version,
+ * so a single cached value would be replaced on every read by another thread. The value of the global version is kept in the slot
+ * shared by all threads, and the value of the thread-specific version is kept in the slot of the thread, so threads never replace
+ * values of each other and only the last value of every thread is kept.
+ *
+ * @param <V> type of the value
+ */
+final class VersionedCache<V> {
+    private final ThreadLocal<Entry<V>> threadEntry = new ThreadLocal<>();
+    private volatile Entry<V> globalEntry;
+
+    /**
+     * Get value cached for the version
+     *
+     * @param version configuration version
+     * @return value or null if there are no value for the version
+     */
+    V get(long version) {
+        Entry<V> current = globalEntry;
+        if (current != null && current.version == version) {
+            return current.value;
+        }
+        current = threadEntry.get();
+        return current != null && current.version == version ? current.value : null;
+    }
+
+    /**
+     * Caches value for the version, replacing the value cached for the previous global version
+     * or the previous version of the current thread
+     *
+     * @param version configuration version
+     * @param value value
+     */
+    void put(long version, V value) {
+        Entry<V> entry = new Entry<>(version, value);
+        if (version == R.getGlobalVersion()) {
+            globalEntry = entry;
+        } else {
+            threadEntry.set(entry);
+        }
+    }
+
+    private static final class Entry<V> {
+        private final long version;
+        private final V value;
+
+        private Entry(long version, V value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
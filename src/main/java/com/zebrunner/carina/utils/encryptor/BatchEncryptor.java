@@ -0,0 +1,637 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.crypto.Cipher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zebrunner.carina.crypto.Algorithm;
+import com.zebrunner.carina.crypto.SecretKeyManager;
+import com.zebrunner.carina.utils.config.Configuration;
+import com.zebrunner.carina.utils.config.EncryptorConfiguration;
+
+/**
+ * Encrypts or re-encrypts properties and text files in one streaming pass.<br>
+ * Modes:
+ * <ul>
+ * <li>values of the listed property keys ({@link #withKeys(Set)}) are encrypted. Already encrypted values are re-encrypted
+ * if previous key is specified ({@link #withPreviousKey(Key)}) or kept as is</li>
+ * <li>otherwise data group of every match of the pattern is encrypted. If previous key is specified, data is decrypted
+ * by the previous key first, so the default pattern of the encrypted data re-encrypts all the values by the new key</li>
+ * </ul>
+ * Encrypted data is prefixed by the key id if it is specified ({@link #withKeyId(String)}), so the file could be re-keyed
+ * to the key of the key ring, see {@code crypto_key_ring} parameter.<br>
+ * Properties are parsed as {@link java.util.Properties#load(Reader)} does: key is separated from the value by {@code =}, {@code :}
+ * or whitespace, escape sequences of the key and value (for example {@code \\} or {@code \\u00e9}) are unescaped, so the
+ * value is encrypted exactly as it is read by the {@link com.zebrunner.carina.utils.R}. Values continued on the next line
+ * are kept as is, but if such value should be encrypted, {@link IllegalArgumentException} is thrown.<br>
+ * Lines are processed in batches, lines of the batch are processed in parallel. Encrypted data and property should not span lines.
+ * File is rewritten atomically: the result is written to the temporary file that replaces the source file.
+ * POSIX permissions, owner and group of the replaced file are kept (owner and group only if the process is allowed to set them).
+ * <br>
+ * Could be run from the command line, see {@link #main(String[])}.
+ * <br>
+ * <b>Beta. Could be changed in future releases</b>
+ */
+public final class BatchEncryptor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final int BATCH_SIZE = 1024;
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final String USAGE = "Usage: BatchEncryptor <file> --key <key> [--previous-key <key>] [--keys <key1,key2>]"
+            + " [--pattern <regex with data group>] [--wrapper <format>] [--algorithm <algorithm>] [--charset <charset>] [--key-id <id>]";
+
+    private final Algorithm algorithm;
+    private final Key key;
+    private final Key previousKey;
+    private final Pattern pattern;
+    private final String wrapper;
+    private final Set<String> keys;
+    private final Charset charset;
+    private final String keyId;
+    private final KeyRing.KeyCiphers ciphers;
+    private final KeyRing.KeyCiphers previousCiphers;
+
+    private BatchEncryptor(Algorithm algorithm, Key key, Key previousKey, Pattern pattern, String wrapper, Set<String> keys, Charset charset,
+            String keyId) {
+        this.algorithm = Objects.requireNonNull(algorithm);
+        this.key = Objects.requireNonNull(key);
+        this.previousKey = previousKey;
+        this.pattern = Objects.requireNonNull(pattern);
+        this.wrapper = Objects.requireNonNull(wrapper);
+        this.keys = Set.copyOf(keys);
+        this.charset = Objects.requireNonNull(charset);
+        if (keyId != null && (keyId.isEmpty() || keyId.indexOf(KeyRing.KEY_ID_SEPARATOR) != -1)) {
+            throw new IllegalArgumentException("Invalid key id: " + keyId);
+        }
+        this.keyId = keyId;
+        this.ciphers = createCiphers(algorithm, key);
+        this.previousCiphers = previousKey != null ? createCiphers(algorithm, previousKey) : null;
+    }
+
+    /**
+     * Creates encryptor that uses {@code crypto_pattern}, {@code crypto_wrapper} and UTF-8 charset
+     *
+     * @param algorithm encryption algorithm
+     * @param key encryption key
+     * @return {@link BatchEncryptor}
+     */
+    public static BatchEncryptor of(Algorithm algorithm, Key key) {
+        return of(algorithm, key, Pattern.compile(Configuration.getRequired(EncryptorConfiguration.Parameter.CRYPTO_PATTERN)),
+                Configuration.getRequired(EncryptorConfiguration.Parameter.CRYPTO_WRAPPER));
+    }
+
+    /**
+     * Creates encryptor that uses UTF-8 charset. Configuration is not read
+     *
+     * @param algorithm encryption algorithm
+     * @param key encryption key
+     * @param pattern pattern of the data to encrypt, should contain {@code data} group
+     * @param wrapper format of the encrypted data, for example {@code {crypt:%s}}
+     * @return {@link BatchEncryptor}
+     */
+    public static BatchEncryptor of(Algorithm algorithm, Key key, Pattern pattern, String wrapper) {
+        return new BatchEncryptor(algorithm, key, null, validatePattern(pattern), wrapper, Set.of(), StandardCharsets.UTF_8, null);
+    }
+
+    /**
+     * @param previousKey key the data is encrypted with now
+     * @return new {@link BatchEncryptor} that re-encrypts data
+     */
+    public BatchEncryptor withPreviousKey(Key previousKey) {
+        return new BatchEncryptor(algorithm, key, previousKey, pattern, wrapper, keys, charset, keyId);
+    }
+
+    /**
+     * @param pattern pattern of the data to encrypt, should contain {@code data} group
+     * @return new {@link BatchEncryptor}
+     */
+    public BatchEncryptor withPattern(Pattern pattern) {
+        return new BatchEncryptor(algorithm, key, previousKey, validatePattern(pattern), wrapper, keys, charset, keyId);
+    }
+
+    /**
+     * @param wrapper format of the encrypted data, for example {@code {crypt:%s}}
+     * @return new {@link BatchEncryptor}
+     */
+    public BatchEncryptor withWrapper(String wrapper) {
+        return new BatchEncryptor(algorithm, key, previousKey, pattern, wrapper, keys, charset, keyId);
+    }
+
+    /**
+     * @param keys keys of the properties whose values should be encrypted. If empty, data matching the pattern is encrypted
+     * @return new {@link BatchEncryptor}
+     */
+    public BatchEncryptor withKeys(Set<String> keys) {
+        return new BatchEncryptor(algorithm, key, previousKey, pattern, wrapper, keys, charset, keyId);
+    }
+
+    /**
+     * @param charset charset of the files
+     * @return new {@link BatchEncryptor}
+     */
+    public BatchEncryptor withCharset(Charset charset) {
+        return new BatchEncryptor(algorithm, key, previousKey, pattern, wrapper, keys, charset, keyId);
+    }
+
+    /**
+     * @param keyId id of the key in the key ring (see {@code crypto_key_ring} parameter), encrypted data is prefixed by it
+     * @return new {@link BatchEncryptor}
+     */
+    public BatchEncryptor withKeyId(String keyId) {
+        return new BatchEncryptor(algorithm, key, previousKey, pattern, wrapper, keys, charset, keyId);
+    }
+
+    /**
+     * Encrypts file in place. Source file is replaced only if the whole file is processed successfully
+     *
+     * @param file file to encrypt
+     * @throws IOException if file could not be read or written
+     */
+    public void encrypt(Path file) throws IOException {
+        encrypt(file, file);
+    }
+
+    /**
+     * Encrypts file. Target file is written atomically
+     *
+     * @param source file to encrypt
+     * @param target file to write the result to, could be the same as source
+     * @throws IOException if file could not be read or written
+     */
+    public void encrypt(Path source, Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (Reader reader = Files.newBufferedReader(source, charset);
+                    Writer writer = Files.newBufferedWriter(temp, charset)) {
+                encrypt(reader, writer);
+            }
+            copyAttributes(Files.exists(target) ? target : source, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                LOGGER.debug("Atomic move is not supported, '{}' will be replaced non-atomically.", target);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Encrypts text read from the reader and writes it to the writer. Line separators are kept as is
+     *
+     * @param reader source of the text
+     * @param writer destination of the result
+     * @throws IOException if text could not be read or written
+     */
+    public void encrypt(Reader reader, Writer writer) throws IOException {
+        LineReader lineReader = new LineReader(reader);
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        String line;
+        while ((line = readLine(lineReader)) != null) {
+            batch.add(line);
+            if (batch.size() == BATCH_SIZE) {
+                write(batch, writer);
+                batch.clear();
+            }
+        }
+        write(batch, writer);
+        writer.flush();
+    }
+
+    private void write(List<String> batch, Writer writer) throws IOException {
+        // cipher work of the lines is done in parallel, the order of the lines is kept
+        List<String> lines = batch.parallelStream()
+                .map(this::encryptLine)
+                .collect(Collectors.toList());
+        for (String line : lines) {
+            writer.write(line);
+        }
+    }
+
+    /**
+     * @param line line with line separator
+     * @return encrypted line with the same line separator
+     */
+    String encryptLine(String line) {
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\n') {
+            end--;
+        }
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+            end--;
+        }
+        String content = line.substring(0, end);
+        String separator = line.substring(end);
+        if (keys.isEmpty()) {
+            return EncryptorUtils.transform(content, pattern, wrapper, this::encryptData) + separator;
+        }
+        return encryptProperty(content) + separator;
+    }
+
+    private String encryptProperty(String line) {
+        int keyStart = skipWhitespace(line, 0);
+        if (keyStart == line.length() || line.charAt(keyStart) == '#' || line.charAt(keyStart) == '!') {
+            return line;
+        }
+        int keyEnd = indexOfKeyEnd(line, keyStart);
+        String key = unescape(line.substring(keyStart, keyEnd));
+        if (!keys.contains(key)) {
+            return line;
+        }
+        if (line.indexOf('\n') != -1 || line.indexOf('\r') != -1) {
+            throw new IllegalArgumentException(String.format("Unable to encrypt '%s' property: multi-line values are not supported.", key));
+        }
+        int valueStart = indexOfValue(line, keyEnd);
+        String plain = unescape(line.substring(valueStart));
+        if (plain.isEmpty()) {
+            return line;
+        }
+        String encrypted;
+        if (pattern.matcher(plain).find()) {
+            // value is already encrypted
+            if (previousKey == null) {
+                return line;
+            }
+            encrypted = EncryptorUtils.transform(plain, pattern, wrapper, this::encryptData);
+        } else {
+            encrypted = String.format(wrapper, encrypt(plain));
+        }
+        return line.substring(0, valueStart) + escapeValue(encrypted);
+    }
+
+    private String encryptData(String data) {
+        return encrypt(previousKey != null ? decrypt(data) : data);
+    }
+
+    private String encrypt(String data) {
+        String encrypted = ciphers.encrypt(data);
+        return keyId != null ? keyId + KeyRing.KEY_ID_SEPARATOR + encrypted : encrypted;
+    }
+
+    private String decrypt(String data) {
+        // previous key is specified explicitly, so key id of the data is skipped
+        return previousCiphers.decrypt(data.substring(data.indexOf(KeyRing.KEY_ID_SEPARATOR) + 1));
+    }
+
+    private static KeyRing.KeyCiphers createCiphers(Algorithm algorithm, Key key) {
+        return new KeyRing.KeyCiphers(
+                new CipherPool(POOL_SIZE, () -> EncryptorUtils.createCipher(algorithm, key, Cipher.ENCRYPT_MODE)),
+                new CipherPool(POOL_SIZE, () -> EncryptorUtils.createCipher(algorithm, key, Cipher.DECRYPT_MODE)));
+    }
+
+    private static Pattern validatePattern(Pattern pattern) {
+        if (!pattern.pattern().contains("(?<data>")) {
+            throw new IllegalArgumentException("There are no data group in pattern: " + pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * Copies POSIX permissions, owner and group of the file. Owner and group could be changed only by privileged user,
+     * so failure to set them is ignored
+     */
+    private static void copyAttributes(Path from, Path to) throws IOException {
+        PosixFileAttributeView toView = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (toView == null || Files.getFileAttributeView(from, PosixFileAttributeView.class) == null) {
+            return;
+        }
+        PosixFileAttributes attributes = Files.readAttributes(from, PosixFileAttributes.class);
+        toView.setPermissions(attributes.permissions());
+        try {
+            if (!attributes.owner().equals(Files.getOwner(to))) {
+                toView.setOwner(attributes.owner());
+            }
+            toView.setGroup(attributes.group());
+        } catch (IOException | SecurityException e) {
+            LOGGER.debug("Unable to keep owner and group of '{}': {}", from, e.getMessage());
+        }
+    }
+
+    private static int skipWhitespace(String line, int start) {
+        int i = start;
+        while (i < line.length() && isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+
+    /**
+     * Get index of the end of the property key: first unescaped '=', ':' or whitespace
+     */
+    private static int indexOfKeyEnd(String line, int keyStart) {
+        for (int i = keyStart; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '=' || c == ':' || isWhitespace(c)) {
+                return i;
+            }
+        }
+        return line.length();
+    }
+
+    /**
+     * Get index of the property value: whitespace and a single '=' or ':' after the key are skipped
+     */
+    private static int indexOfValue(String line, int keyEnd) {
+        int i = skipWhitespace(line, keyEnd);
+        if (i < line.length() && (line.charAt(i) == '=' || line.charAt(i) == ':')) {
+            i = skipWhitespace(line, i + 1);
+        }
+        return i;
+    }
+
+    /**
+     * Check if the property is continued on the next line: line (without line separator) ends with odd number of backslashes
+     */
+    private static boolean isContinued(String line) {
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\n') {
+            end--;
+        }
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+            end--;
+        }
+        int backslashes = 0;
+        for (int i = end - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static boolean isComment(String line) {
+        int start = skipWhitespace(line, 0);
+        return start < line.length() && (line.charAt(start) == '#' || line.charAt(start) == '!');
+    }
+
+    /**
+     * Unescapes key or value as {@link java.util.Properties#load(Reader)} does
+     */
+    private static String unescape(String value) {
+        if (value.indexOf('\\') == -1) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i == value.length() - 1) {
+                unescaped.append(c);
+                continue;
+            }
+            c = value.charAt(++i);
+            switch (c) {
+            case 't':
+                unescaped.append('\t');
+                break;
+            case 'n':
+                unescaped.append('\n');
+                break;
+            case 'r':
+                unescaped.append('\r');
+                break;
+            case 'f':
+                unescaped.append('\f');
+                break;
+            case 'u':
+                if (i + 4 >= value.length()) {
+                    throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                }
+                try {
+                    unescaped.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Malformed \\uxxxx encoding.", e);
+                }
+                i += 4;
+                break;
+            default:
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Escapes value, so it is read by {@link java.util.Properties#load(Reader)} as is
+     */
+    private static String escapeValue(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '\\':
+                escaped.append("\\\\");
+                break;
+            case '\t':
+                escaped.append("\\t");
+                break;
+            case '\n':
+                escaped.append("\\n");
+                break;
+            case '\r':
+                escaped.append("\\r");
+                break;
+            case '\f':
+                escaped.append("\\f");
+                break;
+            case ' ':
+                // leading whitespace is skipped by the reader
+                escaped.append(i == 0 ? "\\ " : " ");
+                break;
+            default:
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Reads line. If properties are encrypted, property continued on the next lines is read as a single line
+     *
+     * @return line with line separator or null if the end of the stream is reached
+     */
+    private String readLine(LineReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || keys.isEmpty() || isComment(line) || !isContinued(line)) {
+            return line;
+        }
+        StringBuilder property = new StringBuilder(line);
+        String next;
+        while ((next = reader.readLine()) != null) {
+            property.append(next);
+            if (!isContinued(next)) {
+                break;
+            }
+        }
+        return property.toString();
+    }
+
+    /**
+     * Encrypts file in place.<br>
+     * Arguments: {@code <file> --key <key> [--previous-key <key>] [--keys <key1,key2>] [--pattern <regex>] [--wrapper <format>]
+     * [--algorithm <algorithm>] [--charset <charset>] [--key-id <id>]}. Keys are in the format of the {@code crypto_key_value} parameter,
+     * pattern, wrapper and algorithm are taken from the configuration if not specified.
+     *
+     * @param args arguments
+     * @throws IOException if file could not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length % 2 == 0) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        Path file = Path.of(args[0]);
+        String keyValue = null;
+        String previousKeyValue = null;
+        String keysValue = null;
+        String patternValue = null;
+        String wrapperValue = null;
+        String algorithmValue = null;
+        String charsetValue = null;
+        String keyIdValue = null;
+        for (int i = 1; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "--key":
+                keyValue = value;
+                break;
+            case "--previous-key":
+                previousKeyValue = value;
+                break;
+            case "--keys":
+                keysValue = value;
+                break;
+            case "--pattern":
+                patternValue = value;
+                break;
+            case "--wrapper":
+                wrapperValue = value;
+                break;
+            case "--algorithm":
+                algorithmValue = value;
+                break;
+            case "--charset":
+                charsetValue = value;
+                break;
+            case "--key-id":
+                keyIdValue = value;
+                break;
+            default:
+                System.err.println("Unknown option: " + args[i]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+        // default pattern matches already encrypted data, so it is used only for re-encryption
+        if (keyValue == null || (previousKeyValue == null && keysValue == null && patternValue == null)) {
+            System.err.println("Key and one of --previous-key, --keys or --pattern options should be specified.");
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        Algorithm algorithm = Algorithm.find(algorithmValue != null ? algorithmValue
+                : Configuration.getRequired(EncryptorConfiguration.Parameter.CRYPTO_ALGORITHM));
+        // configuration is read only for the options that are not specified
+        Pattern pattern = Pattern.compile(patternValue != null ? patternValue
+                : Configuration.getRequired(EncryptorConfiguration.Parameter.CRYPTO_PATTERN));
+        String wrapper = wrapperValue != null ? wrapperValue : Configuration.getRequired(EncryptorConfiguration.Parameter.CRYPTO_WRAPPER);
+        BatchEncryptor encryptor = BatchEncryptor.of(algorithm, SecretKeyManager.getKeyFromString(algorithm, keyValue), pattern, wrapper);
+        if (previousKeyValue != null) {
+            encryptor = encryptor.withPreviousKey(SecretKeyManager.getKeyFromString(algorithm, previousKeyValue));
+        }
+        if (keysValue != null) {
+            encryptor = encryptor.withKeys(Arrays.stream(keysValue.split(","))
+                    .map(String::strip)
+                    .filter(k -> !k.isEmpty())
+                    .collect(Collectors.toSet()));
+        }
+        if (charsetValue != null) {
+            encryptor = encryptor.withCharset(Charset.forName(charsetValue));
+        }
+        if (keyIdValue != null) {
+            encryptor = encryptor.withKeyId(keyIdValue);
+        }
+        long start = System.currentTimeMillis();
+        encryptor.encrypt(file);
+        LOGGER.info("'{}' is encrypted in {} ms.", file, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Reader of the lines that keeps line separators as is, unlike {@link java.io.BufferedReader#readLine()}.
+     * Text is read to the buffer by blocks and the buffer is scanned for the line separator
+     */
+    private static final class LineReader {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+
+        private LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return line with line separator or null if the end of the stream is reached
+         */
+        private String readLine() throws IOException {
+            StringBuilder line = null;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return line == null ? null : line.toString();
+                    }
+                }
+                int start = position;
+                int end = start;
+                while (end < limit && buffer[end] != '\n') {
+                    end++;
+                }
+                boolean isEnd = end < limit;
+                if (isEnd) {
+                    // line separator is kept
+                    end++;
+                }
+                position = end;
+                if (line == null && isEnd) {
+                    return new String(buffer, start, end - start);
+                }
+                if (line == null) {
+                    line = new StringBuilder();
+                }
+                line.append(buffer, start, end - start);
+                if (isEnd) {
+                    return line.toString();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.crypto.Cipher;
+
+import com.zebrunner.carina.utils.ConfigurationMetrics;
+
+/**
+ * Bounded lock-free pool of the ciphers shared by all threads.<br>
+ * Borrow takes a cipher from any occupied slot starting from the slot chosen by the thread, or creates new one if all the slots are empty (miss).
+ * Released cipher is put to any free slot or dropped if the pool is full.
+ */
+final class CipherPool implements CipherProvider {
+    private final AtomicReferenceArray<Cipher> slots;
+    private final Supplier<Cipher> factory;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    CipherPool(int size, Supplier<Cipher> factory) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size of the cipher pool should be positive: " + size);
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.factory = factory;
+    }
+
+    @Override
+    public Cipher borrow() {
+        int start = start();
+        for (int i = 0; i < slots.length(); i++) {
+            int index = (start + i) % slots.length();
+            // cheap read first, so empty slots are not written
+            if (slots.get(index) != null) {
+                Cipher cipher = slots.getAndSet(index, null);
+                if (cipher != null) {
+                    hits.increment();
+                    ConfigurationMetrics.onCipherBorrow(true);
+                    return cipher;
+                }
+            }
+        }
+        misses.increment();
+        ConfigurationMetrics.onCipherBorrow(false);
+        return factory.get();
+    }
+
+    @Override
+    public void release(Cipher cipher) {
+        int start = start();
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.compareAndSet((start + i) % slots.length(), null, cipher)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        // ciphers are not bound to threads
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Threads start from different slots, so they rarely compete for the same slot
+     */
+    private int start() {
+        return (int) (Thread.currentThread().getId() % slots.length());
+    }
+}
@@ -0,0 +1,23 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import javax.crypto.Cipher;
+
+/**
+ * Source of the initialized {@link Cipher} instances. Borrowed cipher is used by a single thread until it is released
+ */
+interface CipherProvider {
+
+    Cipher borrow();
+
+    /**
+     * Returns cipher after successful operation, so it could be reused
+     *
+     * @param cipher cipher got by {@link #borrow()}
+     */
+    void release(Cipher cipher);
+
+    /**
+     * Removes ciphers kept for the current thread
+     */
+    void clear();
+}
@@ -0,0 +1,17 @@
+package com.zebrunner.carina.utils.encryptor;
+
+/**
+ * Strategy of the {@link javax.crypto.Cipher} instances reuse by {@link EncryptorUtils}, see {@code crypto_cipher_strategy} parameter
+ */
+public enum CipherStrategy {
+
+    /**
+     * Every thread creates and keeps its own ciphers until {@link EncryptorUtils#clear()} is called. Suits long-living threads
+     */
+    THREAD_LOCAL,
+
+    /**
+     * Ciphers are borrowed from the bounded pool shared by all threads. Suits virtual threads and pools with short-living threads
+     */
+    POOL
+}
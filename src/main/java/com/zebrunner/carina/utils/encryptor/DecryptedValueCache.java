@@ -0,0 +1,139 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded cache of the decrypted values keyed by the encrypted data.<br>
+ * Values are kept as {@code char[]} and wiped on expiration, eviction and {@link #clear()}.
+ * Entry expires after the time-to-live since it was decrypted. All entries have the same time-to-live, so they expire in order
+ * of decryption: entries are queued in this order, and expired and (when the cache is full) the oldest entries are evicted
+ * from the head of the queue without scanning the cache.
+ */
+final class DecryptedValueCache {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // entries in order of decryption, may contain entries that are already removed from the cache
+    private final Queue<Node> order = new ConcurrentLinkedQueue<>();
+    private final int maxSize;
+    private final long ttlNanos;
+
+    /**
+     * @param maxSize maximum number of the values, 0 disables the cache
+     * @param ttl time-to-live of the value
+     */
+    DecryptedValueCache(int maxSize, Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Get decrypted value from the cache or decrypt and cache it
+     *
+     * @param encrypted encrypted data
+     * @param decryptor decrypts the data
+     * @return decrypted value
+     */
+    String get(String encrypted, UnaryOperator<String> decryptor) {
+        if (maxSize <= 0) {
+            return decryptor.apply(encrypted);
+        }
+        long now = System.nanoTime();
+        Entry entry = entries.get(encrypted);
+        if (entry != null) {
+            String value = entry.read(now);
+            if (value != null) {
+                return value;
+            }
+            // expired or wiped
+            if (entries.remove(encrypted, entry)) {
+                entry.wipe();
+            }
+        }
+        String value = decryptor.apply(encrypted);
+        evict(now);
+        Entry created = new Entry(value.toCharArray(), now + ttlNanos);
+        Entry previous = entries.put(encrypted, created);
+        order.add(new Node(encrypted, created));
+        if (previous != null) {
+            previous.wipe();
+        }
+        return value;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes and wipes all the values
+     */
+    void clear() {
+        entries.keySet().forEach(key -> {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                entry.wipe();
+            }
+        });
+        order.clear();
+    }
+
+    /**
+     * Evicts expired entries and, if the cache is full, the oldest ones, so there is a room for a new entry.
+     * Every queued entry is polled only once, so eviction costs O(1) per cached value
+     */
+    private synchronized void evict(long now) {
+        Node head;
+        while ((head = order.peek()) != null) {
+            if (entries.get(head.key) == head.entry && !head.entry.isExpired(now) && entries.size() < maxSize) {
+                break;
+            }
+            order.poll();
+            if (entries.remove(head.key, head.entry)) {
+                head.entry.wipe();
+            }
+        }
+    }
+
+    private static final class Node {
+        private final String key;
+        private final Entry entry;
+
+        private Node(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+
+    private static final class Entry {
+        private final char[] value;
+        private final long expiresAt;
+        private boolean wiped;
+
+        private Entry(char[] value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        /**
+         * @return value or null if the value is expired or wiped
+         */
+        private synchronized String read(long now) {
+            return wiped || isExpired(now) ? null : new String(value);
+        }
+
+        // value is read and wiped under the same lock, so reader never gets partially wiped value
+        private synchronized void wipe() {
+            Arrays.fill(value, '\0');
+            wiped = true;
+        }
+    }
+}
@@ -1,24 +1,33 @@
 package com.zebrunner.carina.utils.encryptor;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.ConcurrentException;
 import org.apache.commons.lang3.concurrent.ConcurrentInitializer;
 import org.apache.commons.lang3.concurrent.LazyInitializer;
 
 import com.zebrunner.carina.crypto.Algorithm;
 import com.zebrunner.carina.crypto.SecretKeyManager;
+import com.zebrunner.carina.utils.ConfigurationMetrics;
 import com.zebrunner.carina.utils.config.Configuration;
 import com.zebrunner.carina.utils.config.EncryptorConfiguration;
 import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
@@ -34,8 +43,15 @@ public final class EncryptorUtils {
     private static final Pattern ENCRYPT_PATTERN = Pattern.compile("^(?<data>.+?)$");
     private static final String ENCRYPT_WRAPPER = Configuration.getRequired(EncryptorConfiguration.Parameter.CRYPTO_WRAPPER);
     private static final String DECRYPT_WRAPPER = "%s";
+    private static final int BUFFER_SIZE = 8192;
     private static final Algorithm ALGORITHM = Algorithm.find(Configuration.getRequired(EncryptorConfiguration.Parameter.CRYPTO_ALGORITHM));
 
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(10);
+    private static final DecryptedValueCache DECRYPTED_VALUES = new DecryptedValueCache(
+            Configuration.get(EncryptorConfiguration.Parameter.CRYPTO_CACHE_SIZE, Integer.class).orElse(DEFAULT_CACHE_SIZE),
+            Configuration.get(EncryptorConfiguration.Parameter.CRYPTO_CACHE_TTL, Duration.class).orElse(DEFAULT_CACHE_TTL));
+
     private static final ConcurrentInitializer<Key> KEY_LAZY_INITIALIZER = new LazyInitializer<Key>() {
         @Override
         protected Key initialize() throws ConcurrentException {
@@ -43,25 +59,12 @@ public final class EncryptorUtils {
         }
     };
 
-    private static final ThreadLocal<Cipher> CRYPTO_TOOL_ENCRYPT = ThreadLocal.withInitial(() -> {
-        try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM.getName());
-            cipher.init(Cipher.ENCRYPT_MODE, KEY_LAZY_INITIALIZER.get());
-            return cipher;
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | ConcurrentException e) {
-            throw new RuntimeException("Cannot create cipher instance.");
-        }
-    });
-
-    private static final ThreadLocal<Cipher> CRYPTO_TOOL_DECRYPT = ThreadLocal.withInitial(() -> {
-        try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM.getName());
-            cipher.init(Cipher.DECRYPT_MODE, KEY_LAZY_INITIALIZER.get());
-            return cipher;
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | ConcurrentException e) {
-            throw new RuntimeException("Cannot create cipher instance.");
-        }
-    });
+    private static final CipherStrategy CIPHER_STRATEGY = Configuration
+            .get(EncryptorConfiguration.Parameter.CRYPTO_CIPHER_STRATEGY, CipherStrategy.class)
+            .orElse(CipherStrategy.THREAD_LOCAL);
+    private static final int CIPHER_POOL_SIZE = Configuration.get(EncryptorConfiguration.Parameter.CRYPTO_CIPHER_POOL_SIZE, Integer.class)
+            .orElse(Runtime.getRuntime().availableProcessors() * 2);
+    private static final KeyRing KEY_RING = createKeyRing();
 
     private EncryptorUtils() {
         // hide
@@ -84,28 +87,75 @@ public final class EncryptorUtils {
     }
 
     public static String encrypt(String str, Pattern pattern, String wrapper) {
-        Matcher matcher = pattern.matcher(str);
-
-        while (matcher.find()) {
-            String dataToEncrypt = getDataGroup(matcher.group(), pattern);
-            if (dataToEncrypt.isEmpty()) {
-                continue;
-            }
-            str = StringUtils.replace(str, matcher.group(), String.format(wrapper, encryptSingleData(dataToEncrypt)));
-        }
-        return str;
+        return transform(str, pattern, wrapper, EncryptorUtils::encryptSingleData);
     }
 
     public static String decrypt(String str, Pattern pattern, String wrapper) {
-        Matcher matcher = pattern.matcher(str);
-        while (matcher.find()) {
-            String dataToDecrypt = getDataGroup(matcher.group(), pattern);
-            if (dataToDecrypt.isEmpty()) {
-                continue;
-            }
-            str = StringUtils.replace(str, matcher.group(), String.format(wrapper, decryptSingleData(dataToDecrypt)));
+        long start = ConfigurationMetrics.start();
+        // the same encrypted data is usually read many times, so it is decrypted only once
+        String result = transform(str, pattern, wrapper, EncryptorUtils::decryptCached);
+        ConfigurationMetrics.onDecrypt(start);
+        return result;
+    }
+
+    /**
+     * Decrypts text read from the reader and writes it to the writer. Text is processed line by line,
+     * so the whole text is never kept in memory. Encrypted data should not span lines
+     *
+     * @param reader source of the text
+     * @param writer destination of the decrypted text
+     * @throws IOException if text could not be read or written
+     */
+    public static void decrypt(Reader reader, Writer writer) throws IOException {
+        decrypt(reader, writer, DECRYPT_PATTERN, DECRYPT_WRAPPER);
+    }
+
+    /**
+     * Decrypts text read from the reader and writes it to the writer, see {@link #decrypt(Reader, Writer)}.<br>
+     * Text is transformed by chunks of whole lines, so the pattern is applied to each chunk separately:
+     * <ul>
+     * <li>data that spans lines could be not decrypted, as the lines could get into different chunks</li>
+     * <li>{@code ^} and {@code $} anchors (without {@link Pattern#MULTILINE} flag) match the boundaries of the chunk,
+     * not of the whole text nor of each line. Use {@link Pattern#MULTILINE} flag to match the boundaries of the lines</li>
+     * </ul>
+     * Data that is split between reads but does not span lines is always decrypted.
+     * Decrypted values are not cached: streamed files usually contain many values read once, they would only evict
+     * the values of the configuration from the cache and keep decrypted data in memory.
+     *
+     * @param reader source of the text
+     * @param writer destination of the decrypted text
+     * @param pattern pattern of the encrypted data, should contain {@code data} group
+     * @param wrapper format of the decrypted data
+     * @throws IOException if text could not be read or written
+     */
+    public static void decrypt(Reader reader, Writer writer, Pattern pattern, String wrapper) throws IOException {
+        transform(reader, writer, pattern, wrapper, EncryptorUtils::decryptSingleData);
+    }
+
+    /**
+     * Decrypts file, for example testdata.properties or csv, in streaming fashion. File is read and written in UTF-8
+     *
+     * @param source file to decrypt
+     * @param target file to write decrypted text to. Should not be the same as source
+     * @throws IOException if file could not be read or written
+     */
+    public static void decrypt(Path source, Path target) throws IOException {
+        decrypt(source, target, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decrypts file in streaming fashion, see {@link #decrypt(Path, Path)}
+     *
+     * @param source file to decrypt
+     * @param target file to write decrypted text to. Should not be the same as source
+     * @param charset charset of the files
+     * @throws IOException if file could not be read or written
+     */
+    public static void decrypt(Path source, Path target, Charset charset) throws IOException {
+        try (Reader reader = Files.newBufferedReader(source, charset);
+                Writer writer = Files.newBufferedWriter(target, charset)) {
+            decrypt(reader, writer);
         }
-        return str;
     }
 
     public static boolean hasMatch(String str, Pattern pattern) {
@@ -114,32 +164,115 @@ public final class EncryptorUtils {
     }
 
     /**
+     * Removes ciphers of the current thread and wipes cached decrypted values.<br>
      * <b>for internal usage only</b>
      */
     public static void clear() {
-        CRYPTO_TOOL_DECRYPT.remove();
-        CRYPTO_TOOL_ENCRYPT.remove();
+        KEY_RING.clear();
+        DECRYPTED_VALUES.clear();
     }
 
     private static String encryptSingleData(String str) {
-        try {
-            return new String(Base64.encodeBase64(CRYPTO_TOOL_ENCRYPT.get().doFinal(str.getBytes())));
-        } catch (IllegalBlockSizeException | BadPaddingException e) {
-            throw new RuntimeException("Cannot encrypt.");
-        }
+        return KEY_RING.encrypt(str);
     }
 
     private static String decryptSingleData(String str) {
+        return KEY_RING.decrypt(str);
+    }
+
+    private static KeyRing createKeyRing() {
+        Map<String, Key> keys = new HashMap<>();
+        Configuration.get(EncryptorConfiguration.Parameter.CRYPTO_KEY_RING)
+                .map(KeyRing::parse)
+                .ifPresent(ring -> ring.forEach((id, value) -> keys.put(id, SecretKeyManager.getKeyFromString(ALGORITHM, value))));
+        Supplier<Key> defaultKey = () -> {
+            try {
+                return KEY_LAZY_INITIALIZER.get();
+            } catch (ConcurrentException e) {
+                throw new RuntimeException("Cannot create cipher instance.");
+            }
+        };
+        return new KeyRing(defaultKey, keys, Configuration.get(EncryptorConfiguration.Parameter.CRYPTO_KEY_ID).orElse(null),
+                EncryptorUtils::createCipherProvider, (key, mode) -> createCipher(ALGORITHM, key, mode));
+    }
+
+    private static CipherProvider createCipherProvider(Supplier<Cipher> factory) {
+        return CIPHER_STRATEGY == CipherStrategy.POOL ? new CipherPool(CIPHER_POOL_SIZE, factory) : new ThreadLocalCipherProvider(factory);
+    }
+
+    static Cipher createCipher(Algorithm algorithm, Key key, int mode) {
         try {
-            return new String(CRYPTO_TOOL_DECRYPT.get().doFinal(Base64.decodeBase64(str.getBytes())));
-        } catch (IllegalBlockSizeException | BadPaddingException e) {
-            throw new RuntimeException(e);
+            Cipher cipher = Cipher.getInstance(algorithm.getName());
+            cipher.init(mode, key);
+            return cipher;
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException e) {
+            throw new RuntimeException("Cannot create cipher instance.");
         }
     }
 
-    private static String getDataGroup(String str, Pattern pattern) {
+
+    private static String decryptCached(String str) {
+        return DECRYPTED_VALUES.get(str, EncryptorUtils::decryptSingleData);
+    }
+
+    /**
+     * Replaces data group of every match of the pattern with the wrapped result of the function in a single pass.
+     * Matches with empty data group are kept as is
+     */
+    static String transform(String str, Pattern pattern, String wrapper, UnaryOperator<String> function) {
         Matcher matcher = pattern.matcher(str);
-        return matcher.find() ? matcher.group("data") : StringUtils.EMPTY;
+        if (!matcher.find()) {
+            return str;
+        }
+        StringBuilder builder = new StringBuilder(str.length());
+        int last = 0;
+        do {
+            String data = matcher.group("data");
+            if (data == null || data.isEmpty()) {
+                continue;
+            }
+            builder.append(str, last, matcher.start());
+            String result = function.apply(data);
+            // default decrypt wrapper does not need formatting
+            builder.append(DECRYPT_WRAPPER.equals(wrapper) ? result : String.format(wrapper, result));
+            last = matcher.end();
+        } while (matcher.find());
+        return builder.append(str, last, str.length()).toString();
+    }
+
+    /**
+     * Transforms text read from the reader line by line (line separators are kept as is), see {@link #transform(String, Pattern, String, UnaryOperator)}
+     */
+    private static void transform(Reader reader, Writer writer, Pattern pattern, String wrapper, UnaryOperator<String> function)
+            throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        // text that is read but not transformed yet: the last incomplete line
+        StringBuilder pending = new StringBuilder();
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            int lineEnd = lastIndexOf(buffer, read, '\n');
+            if (lineEnd == -1) {
+                pending.append(buffer, 0, read);
+                continue;
+            }
+            pending.append(buffer, 0, lineEnd + 1);
+            writer.write(transform(pending.toString(), pattern, wrapper, function));
+            pending.setLength(0);
+            pending.append(buffer, lineEnd + 1, read - lineEnd - 1);
+        }
+        if (pending.length() > 0) {
+            writer.write(transform(pending.toString(), pattern, wrapper, function));
+        }
+        writer.flush();
+    }
+
+    private static int lastIndexOf(char[] buffer, int length, char c) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     private static void validatePattern(String pattern) {
@@ -0,0 +1,149 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.security.Key;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
+
+/**
+ * Keys used to encrypt and decrypt data, each with its own cached ciphers.<br>
+ * Data encrypted by the key of the ring is prefixed by the key id: {@code <id>:<base64 data>}, for example {@code {crypt:v2:8O9iA4+f3nMzz85szmvKmQ==}},
+ * so the key is found by the id in constant time. Data without prefix is encrypted by the default key.
+ * Base64 data never contains the separator, so the prefix is never ambiguous.
+ */
+final class KeyRing {
+    static final char KEY_ID_SEPARATOR = ':';
+    private static final char KEYS_SEPARATOR = ',';
+
+    private final KeyCiphers defaultCiphers;
+    private final Map<String, KeyCiphers> ciphers;
+    private final String encryptionKeyId;
+    private final KeyCiphers encryptionCiphers;
+
+    /**
+     * @param defaultKey default key, requested on the first usage
+     * @param keys key id - key
+     * @param encryptionKeyId id of the key used for encryption or null if data is encrypted by the default key
+     * @param cipherProviders creates cipher provider by the factory of the ciphers
+     * @param cipherFactory creates cipher by the key and mode
+     */
+    KeyRing(Supplier<Key> defaultKey, Map<String, Key> keys, String encryptionKeyId,
+            Function<Supplier<Cipher>, CipherProvider> cipherProviders, CipherFactory cipherFactory) {
+        this.defaultCiphers = new KeyCiphers(
+                cipherProviders.apply(() -> cipherFactory.create(defaultKey.get(), Cipher.ENCRYPT_MODE)),
+                cipherProviders.apply(() -> cipherFactory.create(defaultKey.get(), Cipher.DECRYPT_MODE)));
+        Map<String, KeyCiphers> keyCiphers = new HashMap<>();
+        keys.forEach((id, key) -> keyCiphers.put(id, new KeyCiphers(
+                cipherProviders.apply(() -> cipherFactory.create(key, Cipher.ENCRYPT_MODE)),
+                cipherProviders.apply(() -> cipherFactory.create(key, Cipher.DECRYPT_MODE)))));
+        this.ciphers = Map.copyOf(keyCiphers);
+        if (encryptionKeyId != null && !ciphers.containsKey(encryptionKeyId)) {
+            throw new InvalidConfigurationException(String.format("There are no '%s' key in the key ring.", encryptionKeyId));
+        }
+        this.encryptionKeyId = encryptionKeyId;
+        this.encryptionCiphers = encryptionKeyId != null ? ciphers.get(encryptionKeyId) : defaultCiphers;
+    }
+
+    /**
+     * Parses key ring in the format {@code <id>:<key>,<id>:<key>}
+     *
+     * @param keyRing key ring
+     * @return key id - key value
+     */
+    static Map<String, String> parse(String keyRing) {
+        Map<String, String> keys = new HashMap<>();
+        for (String entry : keyRing.split(String.valueOf(KEYS_SEPARATOR))) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(KEY_ID_SEPARATOR);
+            if (separator <= 0 || separator == entry.length() - 1) {
+                // key value is not printed
+                throw new InvalidConfigurationException("Key ring entry should be in the format '<id>:<key>'.");
+            }
+            keys.put(entry.substring(0, separator).strip(), entry.substring(separator + 1).strip());
+        }
+        return keys;
+    }
+
+    String encrypt(String data) {
+        String encrypted = encryptionCiphers.encrypt(data);
+        return encryptionKeyId != null ? encryptionKeyId + KEY_ID_SEPARATOR + encrypted : encrypted;
+    }
+
+    String decrypt(String data) {
+        int separator = data.indexOf(KEY_ID_SEPARATOR);
+        if (separator == -1) {
+            return defaultCiphers.decrypt(data);
+        }
+        String keyId = data.substring(0, separator);
+        KeyCiphers keyCiphers = ciphers.get(keyId);
+        if (keyCiphers == null) {
+            throw new InvalidConfigurationException(String.format("Unable to decrypt data: there are no '%s' key in the key ring.", keyId));
+        }
+        return keyCiphers.decrypt(data.substring(separator + 1));
+    }
+
+    /**
+     * Removes ciphers kept for the current thread
+     */
+    void clear() {
+        defaultCiphers.clear();
+        ciphers.values().forEach(KeyCiphers::clear);
+    }
+
+    @FunctionalInterface
+    interface CipherFactory {
+        Cipher create(Key key, int mode);
+    }
+
+    /**
+     * Encrypts and decrypts data by the same key
+     */
+    static final class KeyCiphers {
+        private final CipherProvider encryptCiphers;
+        private final CipherProvider decryptCiphers;
+
+        KeyCiphers(CipherProvider encryptCiphers, CipherProvider decryptCiphers) {
+            this.encryptCiphers = encryptCiphers;
+            this.decryptCiphers = decryptCiphers;
+        }
+
+        String encrypt(String data) {
+            Cipher cipher = encryptCiphers.borrow();
+            try {
+                String encrypted = new String(Base64.encodeBase64(cipher.doFinal(data.getBytes())));
+                // cipher state is undefined after failure, so only successfully used cipher is reused
+                encryptCiphers.release(cipher);
+                return encrypted;
+            } catch (IllegalBlockSizeException | BadPaddingException e) {
+                throw new RuntimeException("Cannot encrypt.");
+            }
+        }
+
+        String decrypt(String data) {
+            Cipher cipher = decryptCiphers.borrow();
+            try {
+                String decrypted = new String(cipher.doFinal(Base64.decodeBase64(data.getBytes())));
+                decryptCiphers.release(cipher);
+                return decrypted;
+            } catch (IllegalBlockSizeException | BadPaddingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void clear() {
+            encryptCiphers.clear();
+            decryptCiphers.clear();
+        }
+    }
+}
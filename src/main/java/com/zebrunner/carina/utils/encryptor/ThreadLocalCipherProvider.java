@@ -0,0 +1,31 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.util.function.Supplier;
+
+import javax.crypto.Cipher;
+
+/**
+ * Keeps a cipher per thread
+ */
+final class ThreadLocalCipherProvider implements CipherProvider {
+    private final ThreadLocal<Cipher> ciphers;
+
+    ThreadLocalCipherProvider(Supplier<Cipher> factory) {
+        this.ciphers = ThreadLocal.withInitial(factory);
+    }
+
+    @Override
+    public Cipher borrow() {
+        return ciphers.get();
+    }
+
+    @Override
+    public void release(Cipher cipher) {
+        // cipher is kept by thread
+    }
+
+    @Override
+    public void clear() {
+        ciphers.remove();
+    }
+}
@@ -15,6 +15,8 @@
  *******************************************************************************/
 package com.zebrunner.carina.utils.exception;
 
+import java.util.List;
+
 public class PlaceholderResolverException extends RuntimeException {
     private static final long serialVersionUID = -1666532382220155518L;
 
@@ -25,4 +27,12 @@ public class PlaceholderResolverException extends RuntimeException {
     public PlaceholderResolverException(String key) {
         super("Value not found by key '" + key + "'");
     }
+
+    public PlaceholderResolverException(List<String> loop) {
+        super("Infinite placeholder loop was found: " + String.join(" -> ", loop));
+    }
+
+    public PlaceholderResolverException(String key, int maxDepth) {
+        super("Placeholder chain is deeper than " + maxDepth + " while resolving key '" + key + "'");
+    }
 }
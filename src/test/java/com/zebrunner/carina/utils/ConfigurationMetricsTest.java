@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.io.StringWriter;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ConfigurationMetrics}
+ */
+public class ConfigurationMetricsTest {
+
+    @Test
+    public void testWrite() {
+        ConfigurationMetrics metrics = new ConfigurationMetrics();
+        metrics.read(R.CONFIG, "url", false);
+        metrics.read(R.CONFIG, "browser", false);
+        metrics.read(R.CONFIG, "browser", true);
+        metrics.override(R.CONFIG, "browser");
+        metrics.parameterRead("env");
+
+        StringWriter writer = new StringWriter();
+        metrics.write(writer);
+        String report = writer.toString();
+        Assert.assertTrue(report.contains("CONFIG\t3"), report);
+        Assert.assertTrue(report.contains("CONFIG\tbrowser\t2\t1\t1"), report);
+        Assert.assertTrue(report.indexOf("CONFIG\tbrowser") < report.indexOf("CONFIG\turl"), "Keys should be sorted by reads");
+        Assert.assertTrue(report.contains("env\t1"), report);
+    }
+
+    @Test
+    public void testHistogram() {
+        ConfigurationMetrics.Histogram histogram = new ConfigurationMetrics.Histogram();
+        Assert.assertEquals(histogram.getPercentile(50), 0);
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+        Assert.assertEquals(histogram.getCount(), 100);
+        Assert.assertEquals(histogram.getPercentile(50), 128);
+        Assert.assertEquals(histogram.getPercentile(99), 128);
+        Assert.assertEquals(histogram.getPercentile(100), 8192);
+    }
+}
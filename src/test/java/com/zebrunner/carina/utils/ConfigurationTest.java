@@ -16,10 +16,33 @@
 package com.zebrunner.carina.utils;
 
 import com.zebrunner.carina.utils.config.Configuration;
+import com.zebrunner.carina.utils.config.ConfigurationOption;
+import com.zebrunner.carina.utils.config.ConfigurationOptions;
+import com.zebrunner.carina.utils.config.ConfigurationProperty;
+import com.zebrunner.carina.utils.config.DefaultEnvArgResolver;
+import com.zebrunner.carina.utils.config.IEnvArgResolver;
+import com.zebrunner.carina.utils.config.IParameter;
+import com.zebrunner.carina.utils.config.ParameterHandle;
 import com.zebrunner.carina.utils.config.StandardConfigurationOption;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import com.zebrunner.carina.utils.commons.SpecialKeywords;
+import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
 
 /**
  * Tests for {@link Configuration}
@@ -75,4 +98,312 @@ public class ConfigurationTest {
                 "capabilities.browserVersion wasn't set");
     }
 
+    @Test
+    public void testParameterHandle() {
+        R.CONFIG.clearTestProperties();
+        IParameter timeout = () -> "handle_timeout";
+        ParameterHandle<Integer> handle = Configuration.handle(timeout, Integer.class);
+        Assert.assertTrue(handle.get().isEmpty());
+        R.CONFIG.put("handle_timeout", "10");
+        Assert.assertEquals(handle.getRequired(), Integer.valueOf(10));
+        R.CONFIG.put("handle_timeout", "20", true);
+        Assert.assertEquals(handle.getRequired(), Integer.valueOf(20));
+        R.CONFIG.put("env", "QA", true);
+        R.CONFIG.put("QA.handle_timeout", "30", true);
+        Assert.assertEquals(handle.getRequired(), Integer.valueOf(30));
+        R.CONFIG.clearTestProperties();
+        Assert.assertEquals(handle.getRequired(), Integer.valueOf(10));
+        Assert.assertThrows(IllegalArgumentException.class, () -> Configuration.handle(timeout, Character.class));
+    }
+
+    @Test
+    public void testParameterHandleWithThreadOverrides() throws Exception {
+        R.CONFIG.clearTestProperties();
+        ParameterHandle<Integer> handle = Configuration.handle(() -> "handle_thread_timeout", Integer.class);
+        List<Optional<Integer>> values = readConcurrently(handle::get);
+        // values are not evicted by reads of the other thread, so each thread gets the same cached instance
+        Assert.assertEquals(values.get(0), Optional.of(1));
+        Assert.assertEquals(values.get(1), Optional.of(2));
+        Assert.assertSame(values.get(2), values.get(0));
+        Assert.assertSame(values.get(3), values.get(1));
+    }
+
+    @Test
+    public void testParameterHandleKeepsGlobalValue() throws Exception {
+        R.CONFIG.clearTestProperties();
+        @SuppressWarnings("rawtypes")
+        ParameterHandle<List> handle = Configuration.handle(() -> "url", List.class);
+        Optional<List> global = handle.get();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                // every modification of the test properties creates a new thread-specific version
+                for (int i = 0; i < 100; i++) {
+                    R.CONFIG.put("url", "thread" + i, true);
+                    Assert.assertEquals(handle.get(), Optional.of(List.of("thread" + i)));
+                }
+                R.CONFIG.clearTestProperties();
+                return null;
+            }).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        // value of the global version is not evicted by the thread-specific versions
+        Assert.assertSame(handle.get(), global);
+    }
+
+    @Test
+    public void testEnvArgResolverWithThreadOverrides() throws Exception {
+        R.CONFIG.clearTestProperties();
+        Configuration.setEnvironmentArgumentResolver(CountingEnvArgResolver.class);
+        try {
+            CountingEnvArgResolver.CALLS.set(0);
+            List<String> values = readConcurrently(
+                    () -> Configuration.getRequired("url", ConfigurationOptions.of(StandardConfigurationOption.ENVIRONMENT)));
+            Assert.assertEquals(values, List.of("thread0", "thread1", "thread0", "thread1"));
+            // environment of each thread is resolved once, reads of the other thread do not evict it
+            Assert.assertEquals(CountingEnvArgResolver.CALLS.get(), 2);
+        } finally {
+            Configuration.setEnvironmentArgumentResolver(DefaultEnvArgResolver.class);
+        }
+    }
+
+    @Test
+    public void testConvertedValuesWithThreadOverrides() throws Exception {
+        R.CONFIG.clearTestProperties();
+        @SuppressWarnings("rawtypes")
+        List<List> values = readConcurrently(() -> Configuration.getRequired("handle_thread_timeout", List.class));
+        Assert.assertEquals(values.get(0), List.of("1"));
+        Assert.assertEquals(values.get(1), List.of("2"));
+        // converted values are not evicted by reads of the other thread
+        Assert.assertSame(values.get(2), values.get(0));
+        Assert.assertSame(values.get(3), values.get(1));
+    }
+
+    /**
+     * Reads value by two threads with different test properties ({@code handle_thread_timeout} is 1 and 2), one by one:
+     * first thread, second thread, first thread, second thread
+     *
+     * @return values in the order of reads
+     */
+    private static <T> List<T> readConcurrently(Supplier<T> reader) throws Exception {
+        List<T> values = new ArrayList<>();
+        Semaphore[] turns = { new Semaphore(1), new Semaphore(0) };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 2; thread++) {
+                int current = thread;
+                futures.add(executor.submit(() -> {
+                    R.CONFIG.put("handle_thread_timeout", String.valueOf(current + 1), true);
+                    R.CONFIG.put("env", "THREAD" + current, true);
+                    R.CONFIG.put("THREAD" + current + ".url", "thread" + current, true);
+                    try {
+                        for (int i = 0; i < 2; i++) {
+                            turns[current].acquire();
+                            values.add(reader.get());
+                            turns[1 - current].release();
+                        }
+                    } finally {
+                        R.CONFIG.clearTestProperties();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return values;
+    }
+
+    @Test
+    public void testParameterListener() {
+        List<String> changes = new ArrayList<>();
+        PropertyChangeSubscription subscription = Configuration.addListener(() -> "listened_param", change -> changes.add(change.getKey()));
+        try {
+            R.CONFIG.put("env", "QA", true);
+            R.CONFIG.put("listened_param", "1");
+            R.CONFIG.put("QA.listened_param", "2");
+            // parameters of the other environments do not define the value
+            R.CONFIG.put("PROD.listened_param", "3");
+            R.CONFIG.put("NOT_QA.listened_param", "4");
+            Assert.assertEquals(changes, List.of("listened_param", "QA.listened_param"));
+        } finally {
+            subscription.cancel();
+            R.CONFIG.clearTestProperties();
+        }
+    }
+
+    @Test
+    public void testConfigurationOptions() {
+        ConfigurationOption custom = new ConfigurationOption() {
+        };
+        ConfigurationOptions options = ConfigurationOptions.of(StandardConfigurationOption.GLOBAL, custom);
+        Assert.assertTrue(options.contains(custom));
+        Assert.assertTrue(options.contains(StandardConfigurationOption.GLOBAL));
+        Assert.assertFalse(options.contains(StandardConfigurationOption.DECRYPT));
+        Assert.assertEquals(options.with(StandardConfigurationOption.DECRYPT),
+                ConfigurationOptions.of(custom, StandardConfigurationOption.DECRYPT, StandardConfigurationOption.GLOBAL));
+        Assert.assertEquals(ConfigurationOptions.register(custom), ConfigurationOptions.register(custom));
+
+        R.CONFIG.put("env", "QA", true);
+        Assert.assertEquals(Configuration.getRequired("url", ConfigurationOptions.of(StandardConfigurationOption.ENVIRONMENT)), "local");
+        Assert.assertEquals(Configuration.getRequired("url", options), R.CONFIG.get("url"));
+        R.CONFIG.clearTestProperties();
+    }
+
+    @Test
+    public void testEnvArgResolverPrefetch() {
+        R.CONFIG.put("env", "QA", true);
+        Configuration.setEnvironmentArgumentResolver(PrefetchingEnvArgResolver.class);
+        try {
+            Assert.assertEquals(Configuration.getRequired("url", ConfigurationOptions.of(StandardConfigurationOption.ENVIRONMENT)), "prefetched");
+            // keys that are not prefetched are requested one by one
+            R.CONFIG.put("QA.timeout", "10", true);
+            Assert.assertEquals(Configuration.getRequired("timeout", ConfigurationOptions.of(StandardConfigurationOption.ENVIRONMENT)), "10");
+        } finally {
+            Configuration.setEnvironmentArgumentResolver(DefaultEnvArgResolver.class);
+            R.CONFIG.clearTestProperties();
+        }
+        R.CONFIG.put("env", "QA", true);
+        Assert.assertEquals(Configuration.getRequired("url", ConfigurationOptions.of(StandardConfigurationOption.ENVIRONMENT)), "local");
+        R.CONFIG.clearTestProperties();
+    }
+
+    @Test
+    public void testConverters() {
+        R.CONFIG.put("converter_duration", "10", true);
+        Assert.assertEquals(Configuration.getRequired("converter_duration", Duration.class), Duration.ofSeconds(10));
+        R.CONFIG.put("converter_duration", "500ms", true);
+        Assert.assertEquals(Configuration.getRequired("converter_duration", Duration.class), Duration.ofMillis(500));
+        R.CONFIG.put("converter_duration", "PT1M", true);
+        Assert.assertEquals(Configuration.getRequired("converter_duration", Duration.class), Duration.ofMinutes(1));
+        R.CONFIG.put("converter_enum", "global", true);
+        Assert.assertEquals(Configuration.getRequired("converter_enum", StandardConfigurationOption.class), StandardConfigurationOption.GLOBAL);
+        R.CONFIG.put("converter_list", "a, b,,c", true);
+        Assert.assertEquals(Configuration.getRequired("converter_list", List.class), List.of("a", "b", "c"));
+        R.CONFIG.put("converter_path", "target/reports", true);
+        Assert.assertEquals(Configuration.getRequired("converter_path", Path.class), Path.of("target/reports"));
+        R.CONFIG.put("converter_uri", "http://localhost:4444/wd/hub", true);
+        Assert.assertEquals(Configuration.getRequired("converter_uri", URI.class), URI.create("http://localhost:4444/wd/hub"));
+        R.CONFIG.clearTestProperties();
+    }
+
+    @Test
+    public void testBind() {
+        R.CONFIG.clearTestProperties();
+        BoundConfiguration configuration = Configuration.bind(BoundConfiguration.class);
+        Assert.assertEquals(configuration.getPort(), 8081);
+        Assert.assertEquals(configuration.getBrowser(), R.CONFIG.get("browser"));
+        Assert.assertTrue(configuration.getMissing().isEmpty());
+        R.CONFIG.put("port", "9090", true);
+        R.CONFIG.put("bound_missing", "10s", true);
+        Assert.assertEquals(configuration.getPort(), 9090);
+        Assert.assertEquals(configuration.getMissing(), Optional.of(Duration.ofSeconds(10)));
+        R.CONFIG.put("port", "not a number", true);
+        Assert.assertThrows(InvalidConfigurationException.class, configuration::getPort);
+        R.CONFIG.clearTestProperties();
+        Assert.assertThrows(InvalidConfigurationException.class, () -> Configuration.bind(InvalidConfiguration.class));
+    }
+
+    @Test
+    public void testBindDefaultMethod() {
+        R.CONFIG.clearTestProperties();
+        BoundConfiguration configuration = Configuration.bind(BoundConfiguration.class);
+        Assert.assertEquals(configuration.getAddress(), R.CONFIG.get("browser") + ":8081");
+        Assert.assertEquals(configuration.getPort(10), 8091);
+        R.CONFIG.put("port", "9090", true);
+        Assert.assertEquals(configuration.getPort(10), 9100);
+        R.CONFIG.clearTestProperties();
+    }
+
+    @Test
+    public void testBindWithThreadOverrides() throws Exception {
+        R.CONFIG.clearTestProperties();
+        ThreadBoundConfiguration configuration = Configuration.bind(ThreadBoundConfiguration.class);
+        @SuppressWarnings("rawtypes")
+        List<Optional<List>> values = readConcurrently(configuration::getTimeout);
+        Assert.assertEquals(values.get(0), Optional.of(List.of("1")));
+        Assert.assertEquals(values.get(1), Optional.of(List.of("2")));
+        // values are not re-read after reads of the other thread
+        Assert.assertSame(values.get(2), values.get(0));
+        Assert.assertSame(values.get(3), values.get(1));
+    }
+
+    @Test
+    public void testDecryptedValuesAreNotCached() {
+        R.CONFIG.put("decrypted_list", "{crypt:8O9iA4+f3nMzz85szmvKmQ==}", true);
+        try {
+            @SuppressWarnings("rawtypes")
+            ParameterHandle<List> handle = Configuration.handle(() -> "decrypted_list", List.class, StandardConfigurationOption.DECRYPT);
+            Assert.assertEquals(handle.getRequired(), List.of("EncryptMe"));
+            Assert.assertNotSame(handle.getRequired(), handle.getRequired());
+
+            DecryptedConfiguration configuration = Configuration.bind(DecryptedConfiguration.class);
+            Assert.assertEquals(configuration.getList(), List.of("EncryptMe"));
+            Assert.assertNotSame(configuration.getList(), configuration.getList());
+            Assert.assertEquals(configuration.toString(), "DecryptedConfiguration{decrypted_list=[EncryptMe]}");
+            R.CONFIG.put("decrypted_list", "", true);
+            Assert.assertThrows(InvalidConfigurationException.class, configuration::getList);
+        } finally {
+            R.CONFIG.clearTestProperties();
+        }
+    }
+
+    public interface DecryptedConfiguration {
+        @SuppressWarnings("rawtypes")
+        @ConfigurationProperty(value = "decrypted_list", options = StandardConfigurationOption.DECRYPT)
+        List getList();
+    }
+
+    public interface ThreadBoundConfiguration {
+        @SuppressWarnings("rawtypes")
+        @ConfigurationProperty("handle_thread_timeout")
+        Optional<List> getTimeout();
+    }
+
+    public interface BoundConfiguration {
+        @ConfigurationProperty("port")
+        int getPort();
+
+        @ConfigurationProperty("browser")
+        String getBrowser();
+
+        @ConfigurationProperty("bound_missing")
+        Optional<Duration> getMissing();
+
+        default String getAddress() {
+            return getBrowser() + ":" + getPort();
+        }
+
+        default int getPort(int offset) {
+            return getPort() + offset;
+        }
+    }
+
+    public interface InvalidConfiguration {
+        @ConfigurationProperty("bound_missing")
+        String getMissing();
+    }
+
+    public static class CountingEnvArgResolver implements IEnvArgResolver {
+        private static final AtomicInteger CALLS = new AtomicInteger();
+
+        @Override
+        public String get(String env, String key) {
+            CALLS.incrementAndGet();
+            return IEnvArgResolver.super.get(env, key);
+        }
+    }
+
+    public static class PrefetchingEnvArgResolver implements IEnvArgResolver {
+        @Override
+        public Map<String, String> getAll(String env) {
+            return Map.of("url", "prefetched");
+        }
+    }
+
 }
@@ -15,11 +15,16 @@
  *******************************************************************************/
 package com.zebrunner.carina.utils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.zebrunner.carina.utils.exception.PlaceholderResolverException;
+
 /**
  * Tests for {@link PlaceholderResolver}
  */
@@ -58,6 +63,45 @@ public class PlaceholderResolverTest {
         Assert.assertTrue(PlaceholderResolver.isValid(validProperties));
     }
 
+    @Test
+    public void testResolveLoop() {
+        PlaceholderResolverException exception = Assert.expectThrows(PlaceholderResolverException.class,
+                () -> PlaceholderResolver.resolve(loopedProperties, "key1"));
+        Assert.assertTrue(exception.getMessage().endsWith("key1 -> key2 -> key3 -> key1"), exception.getMessage());
+    }
+
+    @Test
+    public void testResolveMaxDepth() {
+        Properties properties = new Properties();
+        for (int i = 0; i <= PlaceholderResolver.MAX_DEPTH; i++) {
+            properties.setProperty("key" + i, "${key" + (i + 1) + "}");
+        }
+        Assert.assertThrows(PlaceholderResolverException.class, () -> PlaceholderResolver.resolve(properties, "key0"));
+    }
+
+    @Test
+    public void testResolveNotPlaceholders() {
+        Properties properties = new Properties();
+        properties.setProperty("key", "value");
+        properties.setProperty("text", "${a{b} $ {key} ${key} ${");
+        Assert.assertEquals(PlaceholderResolver.resolve(properties, "text"), "${a{b} $ {key} value ${");
+    }
+
+    @Test
+    public void testResolveAll() {
+        Map<String, String> properties = Map.of(
+                "greeting", "We wish you a ${holiday1}!",
+                "holiday1", "${holiday2}",
+                "holiday2", "${holiday1}",
+                "missing", "${undefined}",
+                "year", "2014",
+                "next_year", "after ${year}");
+        List<String> problems = new ArrayList<>();
+        Map<String, String> resolved = PlaceholderResolver.resolveAll(properties, problems);
+        Assert.assertEquals(resolved, Map.of("year", "2014", "next_year", "after 2014"));
+        Assert.assertEquals(problems.size(), 2, problems.toString());
+    }
+
     @Test
     public void testResolve() {
         Assert.assertEquals(PlaceholderResolver.resolve(validProperties, "holiday2"), "New Year 2014");
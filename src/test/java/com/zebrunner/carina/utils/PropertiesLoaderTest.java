@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link PropertiesLoader}
+ */
+public class PropertiesLoaderTest {
+
+    @Test
+    public void testParallelLoadingEqualsSequentialLoading() throws Exception {
+        // any non-empty environment variable, so the environment overlay is applied to the bundle
+        String envKey = System.getenv().entrySet().stream()
+                .filter(e -> !e.getValue().isEmpty() && System.getProperty(e.getKey()) == null)
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow();
+        Path directory = Files.createTempDirectory("properties-loader");
+        try {
+            Files.writeString(directory.resolve("extra.properties"), "a=1\nb=${a}\n" + envKey + "=file\n", StandardCharsets.UTF_8);
+            Files.writeString(directory.resolve("_extra.properties"), "a=2\nc=2\n", StandardCharsets.UTF_8);
+            Files.writeString(directory.resolve("__extra.properties"), "c=3\n", StandardCharsets.UTF_8);
+
+            Map<String, String> resources = new LinkedHashMap<>();
+            resources.put("CONFIG", "config.properties");
+            resources.put("TESTDATA", "testdata.properties");
+            resources.put("EMAIL", "email.properties");
+            resources.put("EXTRA", "extra.properties");
+
+            System.setProperty("c", "system");
+            System.setProperty("capabilities.loaderTest", "true");
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[] { directory.toUri().toURL() }, ClassLoader.getSystemClassLoader())) {
+                Map<String, PropertiesSnapshot> parallel = PropertiesLoader.loadAll(classLoader, resources, "CONFIG", true);
+
+                ResourceIndex index = ResourceIndex.build(classLoader, resources.values());
+                Assert.assertEquals(parallel.keySet(), resources.keySet());
+                for (Map.Entry<String, String> resource : resources.entrySet()) {
+                    PropertiesLoader.Layers layers = PropertiesLoader.readLayers(index, resource.getKey(), resource.getValue());
+                    PropertiesSnapshot sequential = PropertiesLoader.load(layers, resource.getKey(), "CONFIG".equals(resource.getKey()), true);
+                    Assert.assertEquals(parallel.get(resource.getKey()).asMap(), sequential.asMap(), resource.getKey());
+                    for (String key : sequential.asMap().keySet()) {
+                        Assert.assertEquals(parallel.get(resource.getKey()).getDefault(key), sequential.getDefault(key), key);
+                    }
+                }
+                Assert.assertEquals(parallel.get("CONFIG").get("capabilities.loaderTest"), "true");
+                Assert.assertEquals(parallel.get("EXTRA").get("a"), "2");
+                Assert.assertEquals(parallel.get("EXTRA").get("c"), "system");
+                Assert.assertEquals(parallel.get("EXTRA").get(envKey), System.getenv(envKey));
+            }
+        } finally {
+            System.clearProperty("c");
+            System.clearProperty("capabilities.loaderTest");
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link PropertiesWatcher}
+ */
+public class PropertiesWatcherTest {
+
+    @Test
+    public void testChangedResourceIsReloaded() throws Exception {
+        Path directory = Files.createTempDirectory("carina-watcher");
+        BlockingQueue<Map<R, PropertiesSnapshot>> published = new LinkedBlockingQueue<>();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { directory.toUri().toURL() }, null)) {
+            Files.writeString(directory.resolve("config.properties"), "key=1");
+            Files.writeString(directory.resolve("testdata.properties"), "key=1");
+            try (PropertiesWatcher watcher = new PropertiesWatcher(classLoader,
+                    Map.of(R.CONFIG, "config.properties", R.TESTDATA, "testdata.properties"), () -> false, published::add, 100)) {
+                watcher.start();
+
+                Files.writeString(directory.resolve("config.properties"), "key=22");
+                Map<R, PropertiesSnapshot> snapshots = published.poll(10, TimeUnit.SECONDS);
+                Assert.assertNotNull(snapshots, "Changed resource was not reloaded");
+                Assert.assertEquals(snapshots.keySet(), Set.of(R.CONFIG));
+                Assert.assertEquals(snapshots.get(R.CONFIG).get("key"), "22");
+
+                Files.writeString(directory.resolve("_testdata.properties"), "key=3");
+                snapshots = published.poll(10, TimeUnit.SECONDS);
+                Assert.assertNotNull(snapshots, "Created override was not loaded");
+                Assert.assertEquals(snapshots.get(R.TESTDATA).get("key"), "3");
+
+                Files.delete(directory.resolve("_testdata.properties"));
+                snapshots = published.poll(10, TimeUnit.SECONDS);
+                Assert.assertNotNull(snapshots, "Deleted override was not unloaded");
+                Assert.assertEquals(snapshots.get(R.TESTDATA).get("key"), "1");
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory.toFile());
+        }
+    }
+}
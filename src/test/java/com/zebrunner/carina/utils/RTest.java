@@ -15,6 +15,21 @@
  *******************************************************************************/
 package com.zebrunner.carina.utils;
 
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.io.FileUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -34,6 +49,95 @@ public class RTest {
         Assert.assertEquals(R.CONFIG.get("browser"), BROWSER);
     }
 
+    @Test
+    public void testGlobalPutIsVisibleFromAnotherThread() throws Exception {
+        R.TESTDATA.put("global_key", "global_value");
+        CompletableFuture<String> value = CompletableFuture.supplyAsync(() -> R.TESTDATA.get("global_key"));
+        Assert.assertEquals(value.get(), "global_value");
+    }
+
+    @Test
+    public void testPropertyChangeListeners() {
+        List<PropertyChange> keyChanges = new ArrayList<>();
+        List<PropertyChange> prefixChanges = new ArrayList<>();
+        PropertyChangeSubscription keySubscription = R.CONFIG.addListener("listened_url", keyChanges::add);
+        PropertyChangeSubscription prefixSubscription = R.CONFIG.addPrefixListener("listened_", prefixChanges::add);
+        try {
+            R.CONFIG.put("listened_host", "http://first");
+            R.CONFIG.put("listened_url", "${listened_host}/path");
+            R.CONFIG.put("listened_host", "http://second");
+            R.CONFIG.put("listened_host", "http://second", true);
+            Assert.assertEquals(keyChanges.size(), 2);
+            Assert.assertNull(keyChanges.get(0).getOldValue());
+            Assert.assertEquals(keyChanges.get(0).getNewValue(), "http://first/path");
+            Assert.assertEquals(keyChanges.get(1).getOldValue(), "http://first/path");
+            Assert.assertEquals(keyChanges.get(1).getNewValue(), "http://second/path");
+            Assert.assertEquals(prefixChanges.size(), 4);
+        } finally {
+            keySubscription.cancel();
+            prefixSubscription.cancel();
+            R.CONFIG.clearTestProperties();
+        }
+        R.CONFIG.put("listened_host", "http://third");
+        Assert.assertEquals(prefixChanges.size(), 4);
+    }
+
+    @Test
+    public void testPropertyChangeListenersOfDependentKeys() {
+        R.CONFIG.put("chain_c", "c");
+        R.CONFIG.put("chain_b", "${chain_c}-b");
+        R.CONFIG.put("chain_a", "${chain_b}-a");
+        List<PropertyChange> changes = new ArrayList<>();
+        List<String> testedKeys = new ArrayList<>();
+        PropertyChangeSubscription subscription = R.CONFIG.addListener(key -> testedKeys.add(key) && "chain_a".equals(key), changes::add);
+        try {
+            R.CONFIG.put("chain_c", "changed");
+            // only the updated key and its dependents are compared
+            Assert.assertEquals(new HashSet<>(testedKeys), Set.of("chain_a", "chain_b", "chain_c"));
+            Assert.assertEquals(changes.size(), 1);
+            Assert.assertEquals(changes.get(0).getOldValue(), "c-b-a");
+            Assert.assertEquals(changes.get(0).getNewValue(), "changed-b-a");
+
+            // dependency added by the update is tracked
+            R.CONFIG.put("chain_a", "${chain_d}");
+            R.CONFIG.put("chain_d", "d");
+            Assert.assertEquals(changes.size(), 3);
+            Assert.assertEquals(changes.get(2).getOldValue(), "${chain_d}");
+            Assert.assertEquals(changes.get(2).getNewValue(), "d");
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    @Test
+    public void testRuntimeValuesAreKeptOnPublish() {
+        R.CONFIG.put("runtime_key", "runtime_value");
+        try {
+            // reloaded resource files do not contain the value put at runtime
+            R.publish(Map.of(R.CONFIG, PropertiesSnapshot.of(new Properties(), new Properties())));
+            Assert.assertEquals(R.CONFIG.get("runtime_key"), "runtime_value");
+        } finally {
+            R.reinit();
+        }
+        Assert.assertEquals(R.CONFIG.get("runtime_key"), "");
+    }
+
+    @Test
+    public void testGetByPrefix() {
+        R.CONFIG.clearTestProperties();
+        R.CONFIG.put("prefixed.b", "2");
+        R.CONFIG.put("prefixed.a", "1");
+        Assert.assertEquals(R.CONFIG.getByPrefix("prefixed."), Map.of("prefixed.a", "1", "prefixed.b", "2"));
+        R.CONFIG.put("prefixed.c", "3");
+        R.CONFIG.put("prefixed.a", "0", true);
+        Map<String, String> properties = R.CONFIG.getByPrefix("prefixed.");
+        Assert.assertEquals(properties, Map.of("prefixed.a", "0", "prefixed.b", "2", "prefixed.c", "3"));
+        Assert.assertThrows(UnsupportedOperationException.class, () -> properties.put("prefixed.d", "4"));
+        R.CONFIG.clearTestProperties();
+        Assert.assertEquals(R.CONFIG.getByPrefix("prefixed.").get("prefixed.a"), "1");
+        Assert.assertTrue(R.CONFIG.getByPrefix("prefixed_missing.").isEmpty());
+    }
+
     @Test
     public void testOverrideInProperties() {
         Assert.assertEquals(R.CONFIG.get("port"), "8081");
@@ -60,6 +164,22 @@ public class RTest {
         Assert.assertEquals(R.CONFIG.getBoolean("boolean"), true);
     }
     
+    @Test
+    public void testTypedValueIsUpdated() {
+        R.CONFIG.clearTestProperties();
+        R.CONFIG.put("typed_port", "100");
+        R.CONFIG.put("typed_url", "${typed_port}");
+        Assert.assertEquals(R.CONFIG.getInt("typed_url"), 100);
+        Assert.assertEquals(R.CONFIG.getLong("typed_url"), 100L);
+        R.CONFIG.put("typed_port", "200");
+        Assert.assertEquals(R.CONFIG.getInt("typed_url"), 200);
+        R.CONFIG.put("typed_url", "300", true);
+        Assert.assertEquals(R.CONFIG.getInt("typed_url"), 300);
+        R.CONFIG.clearTestProperties();
+        Assert.assertEquals(R.CONFIG.getDouble("typed_url"), 200.0);
+        Assert.assertThrows(NumberFormatException.class, () -> R.CONFIG.getInt("typed_missing"));
+    }
+
     @Test
     public void testGetProperties() {
         Assert.assertEquals(R.CONFIG.getProperties().getProperty("port"), "8081");
@@ -73,6 +193,24 @@ public class RTest {
         Assert.assertEquals(R.CONFIG.getProperties().get("key3"), "value3", "value3 to key3 wasn't set");
     }
 
+    @Test
+    public void testGetPropertiesView() {
+        R.CONFIG.clearTestProperties();
+        R.CONFIG.put("port", "9090", true);
+        LayeredProperties properties = R.CONFIG.getPropertiesView();
+        Assert.assertEquals(properties.getProperty("port"), "9090");
+        Assert.assertEquals(properties.getProperty("browser"), R.CONFIG.get("browser"));
+        Assert.assertThrows(UnsupportedOperationException.class, () -> properties.setProperty("port", "1"));
+
+        Properties copy = R.CONFIG.getProperties();
+        Assert.assertFalse(copy instanceof LayeredProperties);
+        Assert.assertEquals(copy, properties.materialize());
+        copy.setProperty("port", "1");
+        Assert.assertEquals(copy.size(), properties.size());
+        Assert.assertEquals(R.CONFIG.get("port"), "9090");
+        R.CONFIG.clearTestProperties();
+    }
+
     @Test
     public void testGetResourcePath() {
         Assert.assertTrue(R.getResourcePath("email.properties").endsWith("email.properties"), "email.properties resource path is wrong");
@@ -83,6 +221,99 @@ public class RTest {
         Assert.assertEquals(R.CONFIG.get("url"), "http://localhost:8081");
     }
     
+    @Test
+    public void testResolvedPlaceholderIsUpdatedAfterPut() {
+        R.CONFIG.put("cached_host", "http://first");
+        R.CONFIG.put("cached_url", "${cached_host}/path");
+        Assert.assertEquals(R.CONFIG.get("cached_url"), "http://first/path");
+        R.CONFIG.put("cached_host", "http://second");
+        Assert.assertEquals(R.CONFIG.get("cached_url"), "http://second/path");
+    }
+
+    @Test
+    public void testReinitWithResolvedPlaceholders() {
+        try {
+            R.reinit(true);
+            Assert.assertEquals(R.CONFIG.get("url"), "http://localhost:8081");
+            Assert.assertEquals(R.CONFIG.get("credentials"), "test@gmail.com/{crypt:8O9iA4+f3nMzz85szmvKmQ==}");
+        } finally {
+            // other tests expect lazy placeholders and configuration without global puts
+            R.CONFIG.clearTestProperties();
+            R.reinit(false);
+        }
+        Assert.assertEquals(R.CONFIG.get("url"), "http://localhost:8081");
+    }
+
+    @Test
+    public void testReinitWithPropertiesCache() throws Exception {
+        Path cacheDir = Files.createTempDirectory("properties-cache");
+        System.setProperty("carina_properties_cache_dir", cacheDir.toString());
+        System.setProperty("carina_properties_cache", "true");
+        try {
+            // first reinit writes cache
+            R.reinit();
+            Path cacheFile = PropertiesCache.getCacheFile();
+            Assert.assertTrue(cacheFile.startsWith(cacheDir));
+            Assert.assertTrue(Files.isRegularFile(cacheFile), "Properties cache is not written.");
+
+            // cached value is changed, so it is returned only if resource files are not read again
+            Properties cache = new Properties();
+            try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+                cache.load(reader);
+            }
+            Assert.assertEquals(cache.setProperty("layer|testdata.properties|o|key4", "cached"), "3");
+            try (Writer writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8)) {
+                cache.store(writer, null);
+            }
+
+            // second reinit reads cache
+            R.reinit();
+            Assert.assertEquals(R.TESTDATA.get("key4"), "cached");
+            Assert.assertEquals(R.CONFIG.get("url"), "http://localhost:8081");
+            Assert.assertEquals(R.TESTDATA.get("key1"), "3");
+            Assert.assertFalse(R.CONFIG.isOverwritten("env"));
+        } finally {
+            System.clearProperty("carina_properties_cache");
+            System.clearProperty("carina_properties_cache_dir");
+            R.reinit();
+            FileUtils.deleteDirectory(cacheDir.toFile());
+        }
+        Assert.assertEquals(R.TESTDATA.get("key4"), "3");
+    }
+
+    @Test
+    public void testPropertiesCacheAccessibleByOthersIsNotRead() throws Exception {
+        Assert.assertTrue(PropertiesCache.getCacheFile().startsWith(Path.of(System.getProperty("user.dir"), "target")),
+                "Properties cache should be stored in the project directory by default.");
+        Path cacheDir = Files.createTempDirectory("properties-cache");
+        System.setProperty("carina_properties_cache_dir", cacheDir.toString());
+        System.setProperty("carina_properties_cache", "true");
+        try {
+            R.reinit();
+            Path cacheFile = PropertiesCache.getCacheFile();
+            Assert.assertEquals(Files.getPosixFilePermissions(cacheFile), PosixFilePermissions.fromString("rw-------"));
+
+            Properties cache = new Properties();
+            try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+                cache.load(reader);
+            }
+            cache.setProperty("layer|testdata.properties|o|key4", "cached");
+            try (Writer writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8)) {
+                cache.store(writer, null);
+            }
+            Files.setPosixFilePermissions(cacheFile, PosixFilePermissions.fromString("rw-r--r--"));
+
+            // cache readable by others is ignored, so resource files are read again
+            R.reinit();
+            Assert.assertEquals(R.TESTDATA.get("key4"), "3");
+        } finally {
+            System.clearProperty("carina_properties_cache");
+            System.clearProperty("carina_properties_cache_dir");
+            R.reinit();
+            FileUtils.deleteDirectory(cacheDir.toFile());
+        }
+    }
+
     @Test
     public void testGetEmptyTestProperties() {
         R.CONFIG.clearTestProperties();
@@ -99,6 +330,22 @@ public class RTest {
         Assert.assertEquals(R.CONFIG.get("key1"), "");
     }
 
+    @Test
+    public void testModifyTempPropertiesDirectly() {
+        R.CONFIG.clearTestProperties();
+        R.CONFIG.getTestProperties().setProperty("key1", "value1");
+        Assert.assertEquals(R.CONFIG.get("key1"), "value1");
+        R.CONFIG.getTestProperties().setProperty("key1", "value2");
+        Assert.assertEquals(R.CONFIG.get("key1"), "value2");
+        R.CONFIG.getTestProperties().keySet().removeIf("key1"::equals);
+        Assert.assertEquals(R.CONFIG.get("key1"), "");
+        R.CONFIG.getTestProperties().putAll(Map.of("key1", "value3"));
+        Assert.assertEquals(R.CONFIG.get("key1"), "value3");
+        R.CONFIG.getTestProperties().entrySet().iterator().next().setValue("value4");
+        Assert.assertEquals(R.CONFIG.get("key1"), "value4");
+        R.CONFIG.clearTestProperties();
+    }
+
     @Test
     public void testContainsKey() {
         Assert.assertEquals(R.CONFIG.containsKey("boolean"), true);
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2020-2022 Zebrunner Inc (https://www.zebrunner.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.zebrunner.carina.utils;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ResourceIndex}
+ */
+public class ResourceIndexTest {
+
+    @Test
+    public void testIndexMatchesClassLoader() throws Exception {
+        ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+        ResourceIndex index = ResourceIndex.build(classLoader, List.of("config.properties", "testdata.properties"));
+        for (String name : List.of("config.properties", "_config.properties", "__config.properties", "___testdata.properties")) {
+            Assert.assertEquals(index.getResources(name), Collections.list(classLoader.getResources(name)), name);
+            Assert.assertEquals(index.getResource(name), classLoader.getResource(name), name);
+        }
+        Assert.assertNull(index.getResource("___config.properties"));
+    }
+
+    @Test
+    public void testIndexIncludesParentClassLoader() throws Exception {
+        Path directory = Files.createTempDirectory("resource-index");
+        try {
+            Files.writeString(directory.resolve("_config.properties"), "child=true", StandardCharsets.UTF_8);
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[] { directory.toUri().toURL() }, ClassLoader.getSystemClassLoader())) {
+                ResourceIndex index = ResourceIndex.build(classLoader, List.of("config.properties"));
+                Assert.assertTrue(index.isIndexed());
+                // config.properties is visible only through the parent class loader
+                Assert.assertNotNull(index.getResource("config.properties"));
+                for (String name : List.of("config.properties", "_config.properties", "__config.properties")) {
+                    Assert.assertEquals(index.getResources(name), Collections.list(classLoader.getResources(name)), name);
+                }
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test
+    public void testNotIndexedIfClassLoaderCouldNotBeIntrospected() throws Exception {
+        ClassLoader parent = new ClassLoader(ClassLoader.getSystemClassLoader()) {
+        };
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[0], parent)) {
+            ResourceIndex index = ResourceIndex.build(classLoader, List.of("config.properties"));
+            Assert.assertFalse(index.isIndexed());
+            Assert.assertEquals(index.getResource("config.properties"), classLoader.getResource("config.properties"));
+        }
+    }
+
+    @Test
+    public void testNotIndexedIfClasspathEntryIsNotFile() throws Exception {
+        URL remote = new URL("http://localhost:1/classes/");
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { remote }, ClassLoader.getSystemClassLoader())) {
+            Assert.assertFalse(ResourceIndex.build(classLoader, List.of("config.properties")).isIndexed());
+        }
+    }
+
+    @Test
+    public void testChangedJarIsProbedAgain() throws Exception {
+        Path directory = Files.createTempDirectory("resource-index");
+        try {
+            Path jar = directory.resolve("resources.jar");
+            writeJar(jar, "_config.properties");
+            Files.setLastModifiedTime(jar, FileTime.fromMillis(1_000_000));
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toUri().toURL() }, ClassLoader.getPlatformClassLoader())) {
+                ResourceIndex index = ResourceIndex.build(classLoader, List.of("config.properties"));
+                Assert.assertEquals(index.getResources("_config.properties"), List.of(new URL("jar:" + jar.toUri() + "!/_config.properties")));
+                Assert.assertTrue(index.getResources("__config.properties").isEmpty());
+
+                writeJar(jar, "_config.properties", "__config.properties", "nested/___config.properties");
+                Files.setLastModifiedTime(jar, FileTime.fromMillis(2_000_000));
+                index = ResourceIndex.build(classLoader, List.of("config.properties"));
+                Assert.assertEquals(index.getResources("__config.properties"), List.of(new URL("jar:" + jar.toUri() + "!/__config.properties")));
+                Assert.assertTrue(index.getResources("___config.properties").isEmpty());
+                // outdated content of the jar is replaced
+                Assert.assertEquals(ResourceIndex.exportJarContents().keySet().stream()
+                        .filter(key -> key.endsWith("|" + jar.toAbsolutePath()))
+                        .count(), 1);
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    private static void writeJar(Path jar, String... names) throws Exception {
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (String name : names) {
+                output.putNextEntry(new JarEntry(name));
+                output.write("key=value".getBytes(StandardCharsets.UTF_8));
+                output.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.Key;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.zebrunner.carina.crypto.Algorithm;
+import com.zebrunner.carina.crypto.SecretKeyManager;
+
+/**
+ * Tests for {@link BatchEncryptor}
+ */
+public class BatchEncryptorTest {
+    private static final Algorithm ALGORITHM = Algorithm.AES_ECB_PKCS5_PADDING;
+    private static final Key KEY = SecretKeyManager.getKeyFromString(ALGORITHM, "OIujpEmIVZ0C9kOkXniFRw==");
+
+    @Test
+    public void testEncryptKeys() {
+        BatchEncryptor encryptor = BatchEncryptor.of(ALGORITHM, KEY).withKeys(Set.of("password", "token"));
+        Assert.assertEquals(encryptor.encryptLine("password = EncryptMe\r\n"), "password = {crypt:8O9iA4+f3nMzz85szmvKmQ==}\r\n");
+        Assert.assertEquals(encryptor.encryptLine("token={crypt:8O9iA4+f3nMzz85szmvKmQ==}\n"), "token={crypt:8O9iA4+f3nMzz85szmvKmQ==}\n");
+        Assert.assertEquals(encryptor.encryptLine("login=EncryptMe\n"), "login=EncryptMe\n");
+        Assert.assertEquals(encryptor.encryptLine("# password=EncryptMe"), "# password=EncryptMe");
+        Assert.assertEquals(encryptor.encryptLine("password="), "password=");
+    }
+
+    @Test
+    public void testEncryptEscapedAndWhitespaceSeparatedValues() throws Exception {
+        BatchEncryptor encryptor = BatchEncryptor.of(ALGORITHM, KEY).withKeys(Set.of("password", "my key"));
+        for (String line : new String[] { "password=a\\\\b\n", "password=caf\\u0041\n", "password \\ leading space\n",
+                "  password   EncryptMe\n", "password\tEncryptMe\n", "password : EncryptMe\n", "my\\ key=EncryptMe\n" }) {
+            String encrypted = encryptor.encryptLine(line);
+            Assert.assertNotEquals(encrypted, line);
+            Properties original = new Properties();
+            original.load(new StringReader(line));
+            Properties result = new Properties();
+            result.load(new StringReader(encrypted));
+            Assert.assertEquals(result.stringPropertyNames(), original.stringPropertyNames(), line);
+            String key = original.stringPropertyNames().iterator().next();
+            // value is decrypted to the value read from the original line
+            Assert.assertEquals(EncryptorUtils.decrypt(result.getProperty(key)), original.getProperty(key), line);
+        }
+    }
+
+    @Test
+    public void testMultiLineValues() throws Exception {
+        StringWriter writer = new StringWriter();
+        String text = "login=first\\\n  second\npassword=EncryptMe\n";
+        BatchEncryptor.of(ALGORITHM, KEY).withKeys(Set.of("password")).encrypt(new StringReader(text), writer);
+        Assert.assertEquals(writer.toString(), "login=first\\\n  second\npassword={crypt:8O9iA4+f3nMzz85szmvKmQ==}\n");
+
+        BatchEncryptor encryptor = BatchEncryptor.of(ALGORITHM, KEY).withKeys(Set.of("login"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> encryptor.encrypt(new StringReader(text), new StringWriter()));
+    }
+
+    @Test
+    public void testLineSeparatorsAndLongLinesAreKept() throws Exception {
+        StringWriter writer = new StringWriter();
+        // line is longer than the read buffer
+        String longValue = "a".repeat(20_000);
+        String text = "login=" + longValue + "\r\npassword=EncryptMe\r\n\nlast=value";
+        BatchEncryptor.of(ALGORITHM, KEY).withKeys(Set.of("password")).encrypt(new StringReader(text), writer);
+        Assert.assertEquals(writer.toString(), "login=" + longValue + "\r\npassword={crypt:8O9iA4+f3nMzz85szmvKmQ==}\r\n\nlast=value");
+    }
+
+    @Test
+    public void testOfWithoutConfiguration() {
+        BatchEncryptor encryptor = BatchEncryptor.of(ALGORITHM, KEY, Pattern.compile("\\[plain:(?<data>.+?)\\]"), "[secret:%s]");
+        Assert.assertEquals(encryptor.encryptLine("[plain:EncryptMe]"), "[secret:8O9iA4+f3nMzz85szmvKmQ==]");
+        Assert.assertThrows(IllegalArgumentException.class, () -> BatchEncryptor.of(ALGORITHM, KEY, Pattern.compile("plain"), "%s"));
+    }
+
+    @Test
+    public void testEncryptPattern() {
+        BatchEncryptor encryptor = BatchEncryptor.of(ALGORITHM, KEY).withPattern(Pattern.compile("\\{plain:(?<data>.+?)\\}"));
+        Assert.assertEquals(encryptor.encryptLine("user;{plain:EncryptMe}\n"), "user;{crypt:8O9iA4+f3nMzz85szmvKmQ==}\n");
+        Assert.assertThrows(IllegalArgumentException.class, () -> encryptor.withPattern(Pattern.compile("plain")));
+    }
+
+    @Test
+    public void testReencryptFile() throws Exception {
+        Key newKey = SecretKeyManager.generateKey(ALGORITHM, 128);
+        Path directory = Files.createTempDirectory("batch-encryptor");
+        try {
+            Path file = directory.resolve("testdata.properties");
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 3000; i++) {
+                content.append("password").append(i).append("={crypt:8O9iA4+f3nMzz85szmvKmQ==}\n");
+            }
+            Files.writeString(file, content, StandardCharsets.UTF_8);
+
+            boolean isPosix = Files.getFileAttributeView(file, PosixFileAttributeView.class) != null;
+            Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+            if (isPosix) {
+                Files.setPosixFilePermissions(file, permissions);
+            }
+
+            BatchEncryptor.of(ALGORITHM, newKey).withPreviousKey(KEY).encrypt(file);
+            if (isPosix) {
+                Assert.assertEquals(Files.getPosixFilePermissions(file), permissions);
+            }
+            String reencrypted = Files.readString(file, StandardCharsets.UTF_8);
+            Assert.assertNotEquals(reencrypted, content.toString());
+            Assert.assertEquals(reencrypted.lines().count(), 3000);
+
+            BatchEncryptor.of(ALGORITHM, KEY).withPreviousKey(newKey).encrypt(file);
+            Assert.assertEquals(Files.readString(file, StandardCharsets.UTF_8), content.toString());
+            // temporary file is moved
+            Assert.assertEquals(directory.toFile().list().length, 1);
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.crypto.Cipher;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link CipherPool}
+ */
+public class CipherPoolTest {
+
+    @Test
+    public void testBorrowAndRelease() throws Exception {
+        CipherPool pool = new CipherPool(2, CipherPoolTest::createCipher);
+        Cipher first = pool.borrow();
+        Assert.assertEquals(pool.getMisses(), 1);
+        pool.release(first);
+        Assert.assertSame(pool.borrow(), first);
+        Assert.assertEquals(pool.getHits(), 1);
+
+        // ciphers released above the pool size are dropped
+        List<Cipher> ciphers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ciphers.add(pool.borrow());
+        }
+        ciphers.forEach(pool::release);
+        for (int i = 0; i < 3; i++) {
+            pool.borrow();
+        }
+        Assert.assertEquals(pool.getHits(), 3);
+        Assert.assertEquals(pool.getMisses(), 5);
+
+        // cipher released by one thread is reused by another one
+        pool.release(first);
+        Assert.assertSame(CompletableFuture.supplyAsync(pool::borrow).get(), first);
+    }
+
+    private static Cipher createCipher() {
+        try {
+            return Cipher.getInstance("AES/ECB/PKCS5Padding");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
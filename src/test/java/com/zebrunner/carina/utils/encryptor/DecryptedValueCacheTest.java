@@ -0,0 +1,73 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link DecryptedValueCache}
+ */
+public class DecryptedValueCacheTest {
+
+    @Test
+    public void testValueIsDecryptedOnce() {
+        AtomicInteger decryptions = new AtomicInteger();
+        UnaryOperator<String> decryptor = value -> {
+            decryptions.incrementAndGet();
+            return "plain_" + value;
+        };
+        DecryptedValueCache cache = new DecryptedValueCache(10, Duration.ofMinutes(1));
+        Assert.assertEquals(cache.get("a", decryptor), "plain_a");
+        Assert.assertEquals(cache.get("a", decryptor), "plain_a");
+        Assert.assertEquals(decryptions.get(), 1);
+
+        cache.clear();
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.get("a", decryptor), "plain_a");
+        Assert.assertEquals(decryptions.get(), 2);
+    }
+
+    @Test
+    public void testEviction() {
+        AtomicInteger decryptions = new AtomicInteger();
+        UnaryOperator<String> decryptor = value -> {
+            decryptions.incrementAndGet();
+            return value;
+        };
+        DecryptedValueCache cache = new DecryptedValueCache(2, Duration.ofMinutes(1));
+        cache.get("a", decryptor);
+        cache.get("b", decryptor);
+        cache.get("c", decryptor);
+        Assert.assertEquals(cache.size(), 2);
+        // the oldest value is evicted
+        cache.get("a", decryptor);
+        Assert.assertEquals(decryptions.get(), 4);
+
+        DecryptedValueCache expiringCache = new DecryptedValueCache(2, Duration.ZERO);
+        expiringCache.get("a", decryptor);
+        expiringCache.get("a", decryptor);
+        Assert.assertEquals(decryptions.get(), 6);
+
+        // values are evicted in order of decryption, cleared values are not taken into account
+        DecryptedValueCache refreshedCache = new DecryptedValueCache(2, Duration.ofMinutes(1));
+        refreshedCache.get("a", decryptor);
+        refreshedCache.get("b", decryptor);
+        refreshedCache.clear();
+        refreshedCache.get("b", decryptor);
+        refreshedCache.get("c", decryptor);
+        refreshedCache.get("b", decryptor);
+        Assert.assertEquals(decryptions.get(), 10);
+        refreshedCache.get("d", decryptor);
+        refreshedCache.get("c", decryptor);
+        Assert.assertEquals(decryptions.get(), 11);
+        refreshedCache.get("b", decryptor);
+        Assert.assertEquals(decryptions.get(), 12);
+
+        DecryptedValueCache disabledCache = new DecryptedValueCache(0, Duration.ofMinutes(1));
+        disabledCache.get("a", decryptor);
+        Assert.assertEquals(disabledCache.size(), 0);
+    }
+}
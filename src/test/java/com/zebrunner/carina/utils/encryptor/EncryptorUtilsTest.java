@@ -0,0 +1,76 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link EncryptorUtils}
+ */
+public class EncryptorUtilsTest {
+    private static final String ENCRYPTED = "{crypt:8O9iA4+f3nMzz85szmvKmQ==}";
+    private static final String DECRYPTED = "EncryptMe";
+
+    @Test
+    public void testDecryptMultipleTokens() {
+        Assert.assertEquals(EncryptorUtils.decrypt("user/" + ENCRYPTED + "/" + ENCRYPTED + "$1"), "user/EncryptMe/EncryptMe$1");
+        Assert.assertEquals(EncryptorUtils.decrypt("{crypt:}"), "{crypt:}");
+        Assert.assertEquals(EncryptorUtils.decrypt("plain"), "plain");
+    }
+
+    @Test
+    public void testEncrypt() {
+        Assert.assertEquals(EncryptorUtils.encrypt(DECRYPTED), ENCRYPTED);
+        Assert.assertEquals(EncryptorUtils.decrypt(EncryptorUtils.encrypt("a$b\\c")), "a$b\\c");
+    }
+
+    @Test
+    public void testDecryptReader() throws Exception {
+        StringBuilder source = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        // lines are longer in total than the read buffer, so lines are split between reads
+        for (int i = 0; i < 2000; i++) {
+            source.append("key").append(i).append('=').append(ENCRYPTED).append(i % 2 == 0 ? "\r\n" : "\n");
+            expected.append("key").append(i).append('=').append(DECRYPTED).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        source.append("last=").append(ENCRYPTED);
+        expected.append("last=").append(DECRYPTED);
+
+        StringWriter writer = new StringWriter();
+        EncryptorUtils.decrypt(new StringReader(source.toString()), writer);
+        Assert.assertEquals(writer.toString(), expected.toString());
+    }
+
+    @Test
+    public void testDecryptReaderTokenOnBufferBoundary() throws Exception {
+        // read buffer is 8192 chars, tokens start right before, at and right after the boundary
+        for (int start = 8192 - ENCRYPTED.length(); start <= 8192; start++) {
+            String line = "x".repeat(start) + ENCRYPTED + "y";
+            for (String source : new String[] { line, line + "\n" + ENCRYPTED + "\n", "a\n" + line.substring(2) + "\nz" }) {
+                StringWriter writer = new StringWriter();
+                EncryptorUtils.decrypt(new StringReader(source), writer);
+                Assert.assertEquals(writer.toString(), source.replace(ENCRYPTED, DECRYPTED), "token starts at " + start);
+            }
+        }
+    }
+
+    @Test
+    public void testDecryptFile() throws Exception {
+        Path directory = Files.createTempDirectory("encryptor");
+        try {
+            Path source = directory.resolve("testdata.properties");
+            Path target = directory.resolve("testdata.decrypted.properties");
+            Files.writeString(source, "login=user\npassword=" + ENCRYPTED + "\n", StandardCharsets.UTF_8);
+            EncryptorUtils.decrypt(source, target);
+            Assert.assertEquals(Files.readString(target, StandardCharsets.UTF_8), "login=user\npassword=" + DECRYPTED + "\n");
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+}
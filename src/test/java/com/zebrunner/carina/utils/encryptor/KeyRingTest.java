@@ -0,0 +1,64 @@
+package com.zebrunner.carina.utils.encryptor;
+
+import java.security.Key;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.zebrunner.carina.crypto.Algorithm;
+import com.zebrunner.carina.crypto.SecretKeyManager;
+import com.zebrunner.carina.utils.exception.InvalidConfigurationException;
+
+/**
+ * Tests for {@link KeyRing}
+ */
+public class KeyRingTest {
+    private static final Algorithm ALGORITHM = Algorithm.AES_ECB_PKCS5_PADDING;
+    private static final Key DEFAULT_KEY = SecretKeyManager.getKeyFromString(ALGORITHM, "OIujpEmIVZ0C9kOkXniFRw==");
+
+    @Test
+    public void testDecryptByKeyId() throws Exception {
+        Key newKey = SecretKeyManager.generateKey(ALGORITHM, 128);
+        KeyRing keyRing = createKeyRing(Map.of("v2", newKey), "v2");
+
+        String encrypted = keyRing.encrypt("EncryptMe");
+        Assert.assertTrue(encrypted.startsWith("v2:"), encrypted);
+        Assert.assertEquals(keyRing.decrypt(encrypted), "EncryptMe");
+        // data encrypted by the default key is still decrypted during the rotation
+        Assert.assertEquals(keyRing.decrypt("8O9iA4+f3nMzz85szmvKmQ=="), "EncryptMe");
+        Assert.assertThrows(InvalidConfigurationException.class, () -> keyRing.decrypt("v3:8O9iA4+f3nMzz85szmvKmQ=="));
+
+        KeyRing defaultKeyRing = createKeyRing(Map.of("v2", newKey), null);
+        Assert.assertEquals(defaultKeyRing.encrypt("EncryptMe"), "8O9iA4+f3nMzz85szmvKmQ==");
+        Assert.assertThrows(InvalidConfigurationException.class, () -> createKeyRing(Map.of(), "v2"));
+    }
+
+    @Test
+    public void testRekeyByBatchEncryptor() throws Exception {
+        Key newKey = SecretKeyManager.generateKey(ALGORITHM, 128);
+        KeyRing keyRing = createKeyRing(Map.of("v2", newKey), "v2");
+        String line = BatchEncryptor.of(ALGORITHM, newKey)
+                .withPreviousKey(DEFAULT_KEY)
+                .withKeyId("v2")
+                .withKeys(Set.of("password"))
+                .encryptLine("password={crypt:8O9iA4+f3nMzz85szmvKmQ==}");
+        Assert.assertTrue(line.startsWith("password={crypt:v2:"), line);
+        Assert.assertEquals(EncryptorUtils.transform(line, Pattern.compile("\\{crypt:(?<data>.+?)\\}"), "%s", keyRing::decrypt),
+                "password=EncryptMe");
+    }
+
+    @Test
+    public void testParse() {
+        Assert.assertEquals(KeyRing.parse("v1:OIujpEmIVZ0C9kOkXniFRw==, v2:abc="), Map.of("v1", "OIujpEmIVZ0C9kOkXniFRw==", "v2", "abc="));
+        Assert.assertThrows(InvalidConfigurationException.class, () -> KeyRing.parse("OIujpEmIVZ0C9kOkXniFRw=="));
+        Assert.assertThrows(InvalidConfigurationException.class, () -> KeyRing.parse("v1:"));
+    }
+
+    private static KeyRing createKeyRing(Map<String, Key> keys, String encryptionKeyId) {
+        return new KeyRing(() -> DEFAULT_KEY, keys, encryptionKeyId, ThreadLocalCipherProvider::new,
+                (key, mode) -> EncryptorUtils.createCipher(ALGORITHM, key, mode));
+    }
+}